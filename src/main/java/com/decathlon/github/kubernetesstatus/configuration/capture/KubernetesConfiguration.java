@@ -14,19 +14,30 @@ import io.kubernetes.client.openapi.models.V1ObjectReference;
 import io.kubernetes.client.util.Config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Configuration(proxyBeanMethods=false)
 public class KubernetesConfiguration {
     @Bean
+    @Primary
     public ApiClient createApiClient() throws IOException {
         ApiClient client = Config.defaultClient();
         io.kubernetes.client.openapi.Configuration.setDefaultApiClient(client);
         return client;
     }
 
+    @Bean
+    public ApiClient informerApiClient() throws IOException {
+        // Watches are long-running calls, the default read timeout would cut them every few seconds.
+        ApiClient client = Config.defaultClient();
+        client.setHttpClient(client.getHttpClient().newBuilder().readTimeout(0, TimeUnit.SECONDS).build());
+        return client;
+    }
+
     @Bean
     public EventRecorder eventRecorder(AppProperties appProperties) {
         // Native Conditional is not resolved at runtime wihout big config change.
@@ -0,0 +1,123 @@
+package com.decathlon.github.kubernetesstatus.configuration.process;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflate the gzipped request bodies (Content-Encoding: gzip) sent by the capture nodes.
+ */
+@Component
+public class GzipRequestFilter extends OncePerRequestFilter {
+    // Far more than the biggest batch: refuse the small bodies that inflate without end
+    private static final long MAX_INFLATED_SIZE = 64L * 1024 * 1024;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !"gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+        filterChain.doFilter(new GzipRequest(request), response);
+    }
+
+    private static class GzipRequest extends HttpServletRequestWrapper {
+        private ServletInputStream stream;
+
+        GzipRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public synchronized ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                stream = new InflatingStream(new GZIPInputStream(super.getInputStream()));
+            }
+            return stream;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            // The body is not encoded anymore
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+    }
+
+    private static class InflatingStream extends ServletInputStream {
+        private final InputStream in;
+        private long read;
+        private boolean finished;
+
+        InflatingStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = in.read();
+            count(b < 0 ? -1 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            var n = in.read(b, off, len);
+            count(n);
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            if (n < 0) {
+                finished = true;
+                return;
+            }
+            read += n;
+            if (read > MAX_INFLATED_SIZE) {
+                throw new IOException("Inflated request body larger than " + MAX_INFLATED_SIZE + " bytes");
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("Blocking read only");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package com.decathlon.github.kubernetesstatus.configuration.process;
 
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubETagCache;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubRateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
@@ -7,6 +12,8 @@ import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.routing.SystemDefaultRoutePlanner;
 import org.apache.hc.client5.http.routing.HttpRoutePlanner;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
@@ -16,26 +23,32 @@ import org.springframework.web.client.RestTemplate;
 
 import java.net.ProxySelector;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 
 @Configuration(proxyBeanMethods=false)
 public class RestConfiguration {
 
     @Bean
-    public RestTemplate template(RestTemplateBuilder builder){
+    public RestTemplate template(RestTemplateBuilder builder, AppProperties appProperties, MeterRegistry meterRegistry,
+                                GitHubRateLimiter rateLimiter, GitHubETagCache etagCache){
         HttpRoutePlanner routePlanner = new SystemDefaultRoutePlanner(ProxySelector.getDefault());
 
-        int timeout=30;
+        var http=appProperties.getGithub().getHttp();
 
         ConnectionConfig connConfig = ConnectionConfig.custom()
-                .setConnectTimeout(timeout, TimeUnit.SECONDS)
-                .setSocketTimeout(timeout, TimeUnit.SECONDS)
+                .setConnectTimeout(http.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .setSocketTimeout(http.getSocketTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .setTimeToLive(TimeValue.ofMilliseconds(http.getConnectionTtl().toMillis()))
                 .build();
 
         PoolingHttpClientConnectionManager poolingConnManager = new PoolingHttpClientConnectionManager();
         poolingConnManager.setDefaultConnectionConfig(connConfig);
+        poolingConnManager.setMaxTotal(http.getMaxTotal());
+        poolingConnManager.setDefaultMaxPerRoute(http.getMaxPerRoute());
+        registerPoolGauges(poolingConnManager, meterRegistry);
 
         var requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(Timeout.ofSeconds(timeout))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(http.getConnectTimeout().toMillis()))
                 .build();
 
 
@@ -44,12 +57,26 @@ public class RestConfiguration {
                 .setRoutePlanner(routePlanner)
                 .setDefaultRequestConfig(requestConfig)
                 .setConnectionManager(poolingConnManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(http.getIdleEviction().toMillis()))
                 .build();
 
         return builder
                 .requestFactory(()->new HttpComponentsClientHttpRequestFactory(httpClient))
+                .additionalInterceptors(rateLimiter, etagCache)
                 .build();
     }
 
-}
+    private static void registerPoolGauges(PoolingHttpClientConnectionManager pool, MeterRegistry meterRegistry) {
+        gauge(meterRegistry, pool, "leased", PoolStats::getLeased);
+        gauge(meterRegistry, pool, "pending", PoolStats::getPending);
+        gauge(meterRegistry, pool, "available", PoolStats::getAvailable);
+        gauge(meterRegistry, pool, "max", PoolStats::getMax);
+    }
 
+    private static void gauge(MeterRegistry meterRegistry, PoolingHttpClientConnectionManager pool, String state, ToDoubleFunction<PoolStats> value) {
+        Gauge.builder("github.http.pool.connections", pool, p -> value.applyAsDouble(p.getTotalStats()))
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+}
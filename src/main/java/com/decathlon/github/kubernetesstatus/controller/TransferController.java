@@ -6,8 +6,10 @@ import com.decathlon.github.kubernetesstatus.data.properties.AppMode;
 import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
 import com.decathlon.github.kubernetesstatus.service.github.GitHubEnvironmentService;
 import com.decathlon.github.kubernetesstatus.service.github.GitHubException;
+import com.decathlon.github.kubernetesstatus.service.transfer.TransferResponseCache;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -15,11 +17,15 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @AllArgsConstructor
+@Slf4j
 public class TransferController {
     private AppProperties appProperties;
     private GitHubEnvironmentService gitHubEnvironmentService;
+    private TransferResponseCache transferResponseCache;
 
     @ExceptionHandler(GitHubException.class)
     public ResponseEntity<JsonNode> handleGitHubException(GitHubException e) {
@@ -32,17 +38,59 @@ public class TransferController {
         if (appProperties.getMode() != AppMode.PROCESS) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        if (transferData.repo()==null || transferData.ref()==null || transferData.status()==null
-                || transferData.repo().getEnvironment()==null || transferData.repo().getName()==null){
+        if (!isValid(transferData)){
             return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
         }
-        var l=gitHubEnvironmentService.executeUpdate(
+        //OK
+        return ResponseEntity.ok(new TransferResponse(execute(transferData)));
+    }
+
+    /**
+     * Several events at once. They are sent to GitHub in order, and each one gets its own result: a failing event
+     * does not fail the others.
+     */
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<List<TransferResponse>> transferBatch(@RequestBody List<TransferData> batch) {
+        if (appProperties.getMode() != AppMode.PROCESS) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        var maxBatchSize = appProperties.getProcess().getMaxBatchSize();
+        if (batch.size() > maxBatchSize) {
+            log.warn("Batch of {} events refused, above app.process.max-batch-size ({}): check app.transfer.batch.max-size of the capture nodes", batch.size(), maxBatchSize);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.ok(batch.stream().map(this::transferItem).toList());
+    }
+
+    private TransferResponse transferItem(TransferData transferData) {
+        if (!isValid(transferData)) {
+            return new TransferResponse(-1, HttpStatus.NOT_ACCEPTABLE.value(), null);
+        }
+        try {
+            return new TransferResponse(execute(transferData), HttpStatus.OK.value(), null);
+        } catch (GitHubException e) {
+            return new TransferResponse(-1, e.getStatusCode(), e.getResponse());
+        } catch (RuntimeException e) {
+            // Unexpected (GitHub unreachable...): this event fails, not the ones after it
+            log.error("Transfer of {} on {} failed: {}", transferData.ref(), transferData.repo().getName(), e.getMessage());
+            return new TransferResponse(-1, HttpStatus.INTERNAL_SERVER_ERROR.value(), new GitHubException(HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getMessage()).getResponse());
+        }
+    }
+
+    /**
+     * @return the deployment id, the one already sent back if this event was received before or is being sent.
+     */
+    private long execute(TransferData transferData) {
+        return transferResponseCache.get(transferData.idempotencyKey(), () -> gitHubEnvironmentService.executeUpdate(
                 transferData.repo(),
                 transferData.ref(),
                 transferData.env(),
                 transferData.status(),
-                transferData.payload());
-        //OK
-        return ResponseEntity.ok(new TransferResponse(l));
+                transferData.payload()));
+    }
+
+    private static boolean isValid(TransferData transferData) {
+        return transferData != null && transferData.repo() != null && transferData.ref() != null && transferData.status() != null
+                && transferData.repo().getEnvironment() != null && transferData.repo().getName() != null;
     }
 }
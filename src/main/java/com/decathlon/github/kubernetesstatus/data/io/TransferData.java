@@ -2,8 +2,51 @@ package com.decathlon.github.kubernetesstatus.data.io;
 
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
+import com.fasterxml.jackson.annotation.JsonCreator;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
 
-public record TransferData(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload) {
+/**
+ * @param generation            the generation of the GitHub deployment resource sending this event.
+ * @param sourceResourceVersion the resource version of the source object the status was computed from.
+ * @param idempotencyKey        the same for the same event, so the process node can answer an event sent again without
+ *                              calling GitHub. Null from the capture nodes not sending it.
+ */
+public record TransferData(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload,
+                           long generation, String sourceResourceVersion, String idempotencyKey) {
+
+    @JsonCreator
+    public TransferData {
+        // Read from the canonical constructor, not the one computing the key
+    }
+
+    public TransferData(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload,
+                        long generation, String sourceResourceVersion) {
+        this(repo, ref, env, status, payload, generation, sourceResourceVersion,
+                idempotencyKey(repo, ref, env, status, payload, generation, sourceResourceVersion));
+    }
+
+    /**
+     * @return a key computed from everything GitHub is sent for this event, and from the source version it was
+     * captured from: the same status seen again later (success, failure, then success again) is a new event.
+     */
+    public static String idempotencyKey(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload,
+                                        long generation, String sourceResourceVersion) {
+        var event = String.join("|",
+                repo != null ? repo.getOrg() : null,
+                repo != null ? repo.getName() : null,
+                repo != null ? repo.getEnvironment() : null,
+                ref,
+                Long.toString(env),
+                status != null ? String.valueOf(status.status()) : null,
+                status != null ? status.message() : null,
+                // Sorted, so the key does not depend on the map order
+                payload != null ? new TreeMap<>(payload).toString() : null,
+                Long.toString(generation),
+                sourceResourceVersion);
+        return UUID.nameUUIDFromBytes(event.getBytes(StandardCharsets.UTF_8)).toString();
+    }
 }
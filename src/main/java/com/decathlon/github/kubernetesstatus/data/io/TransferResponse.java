@@ -1,4 +1,16 @@
 package com.decathlon.github.kubernetesstatus.data.io;
 
-public record TransferResponse(long eventId) {
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * @param eventId the GitHub deployment id, -1 if it failed.
+ * @param status in a batch, the HTTP status this item would have got on its own.
+ * @param error in a batch, the error of this item.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TransferResponse(long eventId, Integer status, JsonNode error) {
+    public TransferResponse(long eventId) {
+        this(eventId, null, null);
+    }
 }
@@ -1,10 +1,16 @@
 package com.decathlon.github.kubernetesstatus.data.properties;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 @ConfigurationProperties("app")
 @Component
@@ -12,6 +18,7 @@ import java.time.Duration;
 public class AppProperties {
     private AppMode mode;
     private TransferProperties transfer;
+    private ProcessProperties process=new ProcessProperties();
     private GitHubProperties github;
     private KubernetesProperties kubernetes;
 
@@ -21,26 +28,138 @@ public class AppProperties {
         private String githubApi;
         private String token;
         private GithubAppProperties app;
+        private List<GithubAppProperties> apps=new ArrayList<>();
+        private CacheProperties errorCache=new CacheProperties(Duration.ofMinutes(10), 1000);
+        private CacheProperties deploymentCache=new CacheProperties(Duration.ofHours(1), 10000);
+        private CacheProperties etagCache=new CacheProperties(Duration.ofHours(1), 1000);
+        private CacheProperties transferCache=new CacheProperties(Duration.ofMinutes(10), 10000);
+        private RateLimitProperties rateLimit=new RateLimitProperties();
+        private DebounceProperties debounce=new DebounceProperties();
+        private HttpProperties http=new HttpProperties();
+
+        /**
+         * @return the organizations in {@link #orgs} (comma separated), the first one being the default.
+         */
+        public List<String> orgList() {
+            return Arrays.stream(orgs.split(","))
+                    .map(String::trim)
+                    .filter(org -> !org.isEmpty())
+                    .toList();
+        }
+    }
+
+    @Data
+    public static class HttpProperties {
+        private int maxTotal=50;
+        private int maxPerRoute=50;
+        private Duration connectTimeout=Duration.ofSeconds(30);
+        private Duration socketTimeout=Duration.ofSeconds(30);
+        private Duration connectionTtl=Duration.ofMinutes(5);
+        private Duration idleEviction=Duration.ofSeconds(30);
+        private boolean http2=true;
+    }
+
+    @Data
+    public static class DebounceProperties {
+        private boolean enabled=false;
+        private Duration window=Duration.ofSeconds(5);
+        private int concurrency=10;
+    }
+
+    @Data
+    public static class RateLimitProperties {
+        private boolean enabled=true;
+        private long reserve=100;
+        private Duration maxWait=Duration.ofSeconds(30);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheProperties {
+        private Duration ttl;
+        private long maxSize;
     }
 
     @Data
     public static class GithubAppProperties {
         private long id;
         private String privateKey;
+        private Duration refreshAhead=Duration.ofMinutes(10);
+        private Duration retryDelay=Duration.ofSeconds(30);
     }
 
     @Data
     public static class KubernetesProperties {
         private Duration refresh=Duration.ofSeconds(60);
+        private boolean informer=true;
+        private boolean resync=true;
+        private int pageSize=500;
+        private Duration watchTimeout=Duration.ofSeconds(2);
+        private int batchFetchMin=2;
+        private WorkerProperties workers=new WorkerProperties();
+        private QueueProperties queue=new QueueProperties();
 
         public long getRefreshInSecond() {
             return refresh.get(java.time.temporal.ChronoUnit.SECONDS);
         }
     }
 
+    @Data
+    public static class WorkerProperties {
+        private int concurrency=8;
+        private boolean virtualThreads=true;
+        private int maxPerRepository=2;
+        private int maxPerNamespace=4;
+        private Duration cycleDeadline=Duration.ofSeconds(50);
+    }
+
+    @Data
+    public static class QueueProperties {
+        private Duration baseDelay=Duration.ofSeconds(5);
+        private Duration maxDelay=Duration.ofMinutes(10);
+        private long rate=10;
+        private long burst=100;
+    }
+
     @Data
     public static class TransferProperties {
         private String host;
         private String oauthRegistration;
+        private int maxInFlight=16;
+        private int maxPending=1000;
+        private BatchProperties batch=new BatchProperties();
+        private OutboxProperties outbox=new OutboxProperties();
+        private EncodingProperties encoding=new EncodingProperties();
+    }
+
+    @Data
+    public static class ProcessProperties {
+        private int maxBatchSize=500;
+    }
+
+    @Data
+    public static class EncodingProperties {
+        public enum Format { JSON, CBOR }
+
+        private Format format=Format.JSON;
+        private boolean gzip=false;
+    }
+
+    @Data
+    public static class OutboxProperties {
+        private boolean enabled=false;
+        private String directory="/workspace/outbox";
+        private DataSize segmentSize=DataSize.ofMegabytes(1);
+        private DataSize maxSize=DataSize.ofMegabytes(100);
+        private Duration retryDelay=Duration.ofSeconds(5);
+        private Duration maxRetryDelay=Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class BatchProperties {
+        private boolean enabled=false;
+        private int maxSize=50;
+        private Duration maxWait=Duration.ofMillis(200);
     }
 }
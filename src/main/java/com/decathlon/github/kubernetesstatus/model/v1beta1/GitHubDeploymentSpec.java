@@ -74,5 +74,13 @@ public class GitHubDeploymentSpec {
         private String name;
         @NotNull
         private String environment;
+        /**
+         * GitHub organization of the repository, the first one configured in app.github.orgs if not set.
+         */
+        private String org;
+
+        public RepositoryDetail(String name, String environment) {
+            this(name, environment, null);
+        }
     }
 }
@@ -28,4 +28,16 @@ public class GitHubDeploymentStatus {
 
     @PrinterColumn
     private long deploymentId;
+
+    // GHD generation the status was computed for
+    private long observedGeneration;
+
+    // resourceVersion of the source object the status was computed from
+    private String sourceResourceVersion;
+
+    // Hash of the ref and status pushed to GitHub
+    private String statusHash;
+
+    // RFC 3339 date of the last push
+    private String observedAt;
 }
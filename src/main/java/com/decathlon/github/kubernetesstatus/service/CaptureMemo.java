@@ -0,0 +1,82 @@
+package com.decathlon.github.kubernetesstatus.service;
+
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last successful capture of each GHD (by uid): the source resourceVersion and GHD generation it was done on, with the
+ * computed ref and status. While both are unchanged, capturing again would give the same result.
+ * <p>
+ * The same information is kept in the GHD status, so after a restart the memo is warmed from the GHD itself the
+ * first time it is seen.
+ */
+@Service
+public class CaptureMemo {
+    public record Entry(String sourceResourceVersion, long generation, String ref, KubeObjectResult status) { }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public boolean isUnchanged(GitHubDeployment deployment, String sourceResourceVersion) {
+        var uid = deployment.getMetadata().getUid();
+        if (uid == null || sourceResourceVersion == null) {
+            return false;
+        }
+        var entry = entries.computeIfAbsent(uid, k -> fromStatus(deployment));
+        return entry != null
+                && entry.generation() == generation(deployment)
+                && Objects.equals(entry.sourceResourceVersion(), sourceResourceVersion);
+    }
+
+    public void remember(GitHubDeployment deployment, String sourceResourceVersion, String ref, KubeObjectResult status) {
+        var uid = deployment.getMetadata().getUid();
+        if (uid == null || sourceResourceVersion == null) {
+            return;
+        }
+        entries.put(uid, new Entry(sourceResourceVersion, generation(deployment), ref, status));
+    }
+
+    /**
+     * @return a short hash of what is pushed to GitHub for this ref and status.
+     */
+    public static String hash(String ref, KubeObjectResult status) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(
+                    (ref + "\n" + status.status() + "\n" + status.message()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Entry fromStatus(GitHubDeployment deployment) {
+        var status = deployment.getStatus();
+        if (status == null || status.getSourceResourceVersion() == null || status.getStatus() == null) {
+            return null;
+        }
+        return new Entry(status.getSourceResourceVersion(), status.getObservedGeneration(), status.getRef(), null);
+    }
+
+    public Optional<Entry> get(String uid) {
+        return Optional.ofNullable(entries.get(uid));
+    }
+
+    public void evict(String uid) {
+        if (uid != null) {
+            entries.remove(uid);
+        }
+    }
+
+    private static long generation(GitHubDeployment deployment) {
+        return Objects.requireNonNullElse(deployment.getMetadata().getGeneration(), 0L);
+    }
+}
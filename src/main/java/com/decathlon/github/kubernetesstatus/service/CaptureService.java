@@ -2,26 +2,26 @@ package com.decathlon.github.kubernetesstatus.service;
 
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentStatus;
+import com.decathlon.github.kubernetesstatus.service.extract.CompiledExtractRule;
+import com.decathlon.github.kubernetesstatus.service.extract.ExtractRuleCache;
+import com.decathlon.github.kubernetesstatus.service.extract.ImageReference;
 import com.decathlon.github.kubernetesstatus.service.kstatus.Status;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
 import com.decathlon.github.kubernetesstatus.service.kubernetes.DynamicObjectExtractor;
 import com.decathlon.github.kubernetesstatus.service.kubernetes.EventManager;
 import com.google.gson.JsonArray;
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.Option;
-import com.jayway.jsonpath.spi.json.GsonJsonProvider;
 import io.kubernetes.client.openapi.models.V1ObjectMeta;
 import io.kubernetes.client.util.generic.dynamic.DynamicKubernetesObject;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.logging.log4j.util.Strings;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Instant;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Objects;
-import java.util.regex.Pattern;
 
 @Service
 @AllArgsConstructor
@@ -32,14 +32,35 @@ public class CaptureService {
     private DynamicObjectExtractor dynamicObjectExtractor;
     private UpdateService updateService;
     private EventManager eventManager;
+    private ExtractRuleCache extractRuleCache;
+    private CaptureMemo captureMemo;
 
 
-    public void capture(GitHubDeployment deployment) {
+    /**
+     * Capture the status of the GHD source object and push it if needed.
+     *
+     * @return false if the capture failed and should be retried later.
+     */
+    public boolean capture(GitHubDeployment deployment) {
+        return Boolean.TRUE.equals(captureAsync(deployment).block());
+    }
+
+    /**
+     * Same as {@link #capture(GitHubDeployment)}: the source object is read right away, then the GHD status is
+     * patched when GitHub (or the process node) answers, without holding the calling thread.
+     */
+    public Mono<Boolean> captureAsync(GitHubDeployment deployment) {
         log.debug("[{}/{}] Observing GitHub Deployment", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName());
 
         var kobj=dynamicObjectExtractor.extractKubeObject(deployment.getSpec().getSourceRef());
         if (kobj==null) {
-            return;
+            return Mono.just(false);
+        }
+
+        var sourceVersion=kobj.getMetadata().getResourceVersion();
+        if (captureMemo.isUnchanged(deployment, sourceVersion)) {
+            log.debug("[{}/{}] {}/{} unchanged since last capture", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), kobj.getMetadata().getNamespace(), kobj.getMetadata().getName());
+            return Mono.just(true);
         }
 
         log.info("[{}/{}] Will check {}/{} kubernetes object", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), kobj.getMetadata().getNamespace(), kobj.getMetadata().getName());
@@ -47,35 +68,46 @@ public class CaptureService {
         var ref=extractRef(deployment, kobj);
         if (ref==null){
             log.warn("[{}/{}] Cannot extract ref from kube object with extract rule {}", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), deployment.getSpec().getExtract());
-            return;
+            // Retrying will not help: the GHD or its source has to change.
+            captureMemo.remember(deployment, sourceVersion, null, null);
+            return Mono.just(true);
         }
 
         var status=Status.compute(kobj);
 
         log.info("[{}/{}] ref found is {}, computed status is {}", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), ref, status);
 
-        updateGhd(deployment, kobj.getMetadata(), status, ref);
+        return updateGhd(deployment, kobj.getMetadata(), status, ref);
+    }
+
+    /**
+     * Remember this source version is handled, so it is not captured again until it changes.
+     */
+    private boolean captured(GitHubDeployment deployment, V1ObjectMeta metadata, String ref, KubeObjectResult status) {
+        captureMemo.remember(deployment, metadata.getResourceVersion(), ref, status);
+        return true;
     }
 
-    private void updateGhd(GitHubDeployment deployment, V1ObjectMeta metadata, KubeObjectResult status, String ref) {
+    private Mono<Boolean> updateGhd(GitHubDeployment deployment, V1ObjectMeta metadata, KubeObjectResult status, String ref) {
         long generation=Objects.requireNonNullElse(metadata.getGeneration(), 0L);
 
         // Assert github deployment is targeting the correct source
         if ( !deployment.getSpec().getSourceRef().getName().equals(metadata.getName())
                 || !deployment.getSpec().getSourceRef().getNamespace().equals(metadata.getNamespace())){
-            return;
+            return Mono.just(captured(deployment, metadata, ref, status));
         }
 
         var currentStatus = deployment.getStatus();
+        var statusHash = CaptureMemo.hash(ref, status);
         if (currentStatus != null &&
                 currentStatus.getStatus()!=null &&
-                !currentStatus.getStatus().canMoveTo(status.status()) &&
+                (!currentStatus.getStatus().canMoveTo(status.status()) || statusHash.equals(currentStatus.getStatusHash())) &&
                 ref.equals(currentStatus.getRef())
         ) {
             // already up to date, so nothing to do.
             // Or already end up to a final state, so nothing to do.
             log.info("[{}/{}] up to date", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName());
-            return;
+            return Mono.just(captured(deployment, metadata, ref, status));
         }
 
         var payload=new HashMap<String, String>();
@@ -88,13 +120,34 @@ public class CaptureService {
 
         var env = (currentStatus != null && ref.equals(currentStatus.getRef())) ? currentStatus.getDeploymentId() : -1;
 
-        env = updateService.executeUpdate(repo, ref, env, status, payload);
-
-        if (env == -1) {
-            log.error("[{}/{}] Failed to update deployment", metadata.getNamespace(), metadata.getName());
-            return;
-        }
+        // Part of the transfer key: the same status seen again after another one is a new event
+        var observedGeneration = Objects.requireNonNullElse(deployment.getMetadata().getGeneration(), 0L);
+
+        return updateService.executeUpdate(repo, ref, env, status, payload, observedGeneration, metadata.getResourceVersion())
+                .defaultIfEmpty(-1L)
+                // The patch is a blocking call to the Kubernetes API, kept out of the HTTP client threads
+                .publishOn(Schedulers.boundedElastic())
+                .map(deploymentId -> {
+                    if (deploymentId == -1) {
+                        log.error("[{}/{}] Failed to update deployment", metadata.getNamespace(), metadata.getName());
+                        return false;
+                    }
+                    if (deploymentId == UpdateService.QUEUED) {
+                        // The outbox sends it later: no deployment id yet. Not remembered, so the next capture sends
+                        // it again (the process node answers it from its idempotency cache once replayed) and patches.
+                        log.info("[{}/{}] Status kept in the transfer outbox", metadata.getNamespace(), metadata.getName());
+                        return true;
+                    }
+                    patchStatus(deployment, metadata, status, ref, deploymentId, generation, statusHash);
+                    return captured(deployment, metadata, ref, status);
+                })
+                .onErrorResume(e -> {
+                    log.error("[{}/{}] Failed to update deployment: {}", metadata.getNamespace(), metadata.getName(), e.getMessage());
+                    return Mono.just(false);
+                });
+    }
 
+    private void patchStatus(GitHubDeployment deployment, V1ObjectMeta metadata, KubeObjectResult status, String ref, long env, long generation, String statusHash) {
         var sourceRef=deployment.getSpec().getSourceRef();
 
         log.info("[{}/{}] New status has been push", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName());
@@ -105,6 +158,10 @@ public class CaptureService {
                         .withDeploymentId(env)
                         .withSource(String.format("%s/%s/%s", sourceRef.getKind(), sourceRef.getNamespace(), sourceRef.getName()))
                         .withSourceGeneration(generation)
+                        .withObservedGeneration(Objects.requireNonNullElse(deployment.getMetadata().getGeneration(), 0L))
+                        .withSourceResourceVersion(metadata.getResourceVersion())
+                        .withStatusHash(statusHash)
+                        .withObservedAt(Instant.now().toString())
                         .build()
         ).build();
 
@@ -112,94 +169,70 @@ public class CaptureService {
     }
 
     private String extractRef(GitHubDeployment deployment, DynamicKubernetesObject kobj) {
-        var extract=deployment.getSpec().getExtract();
-        var rawValue=extractGlobalRef(deployment, kobj);
+        var rule=extractRuleCache.get(deployment);
+        var rawValue=extractGlobalRef(deployment, rule, kobj);
         if (rawValue==null) {
             return null;
         }
 
-        String ref=extractSimpleRef(deployment, rawValue);
-        if (ref==null || Strings.isBlank(extract.getTemplate())) {
-            return ref;
-        }
-
-        if (extract.getTemplate().contains("{}")) {
-            return extract.getTemplate().replace("{}", ref);
-        }else{
-            log.info("[{}/{}] The template {} does not contain {}, using it like a prefix", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), extract.getTemplate(), "{}");
-            return extract.getTemplate()+ref;
+        String ref=extractSimpleRef(deployment, rule, rawValue);
+        if (ref==null) {
+            return null;
         }
+        return rule.applyTemplate(ref);
     }
 
-    private String extractSimpleRef(GitHubDeployment deployment, String rawValue) {
-        var extract=deployment.getSpec().getExtract();
-        if (Strings.isBlank(extract.getRegexp())){
+    private String extractSimpleRef(GitHubDeployment deployment, CompiledExtractRule rule, String rawValue) {
+        if (rule.getPattern()==null){
             return rawValue;
         }
 
-        var pattern = Pattern.compile(extract.getRegexp());
-        var matcher = pattern.matcher(rawValue);
-
-        if (!matcher.find()) {
-            log.warn("[{}/{}] Cannot extract ref from content '{}'. This does not match regexp '{}'", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), rawValue, extract.getRegexp());
+        var matcher = rule.match(rawValue);
+        if (matcher==null) {
+            log.warn("[{}/{}] Cannot extract ref from content '{}'. This does not match regexp '{}'", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), rawValue, rule.getPattern());
             return null;
         }
         // Single group => ok return it
-        if (matcher.groupCount()==1){
+        if (rule.isSingleGroup()){
             return matcher.group(1);
         }
         // Multiple groups => return the 'ref' one if it is exist.
-        try {
+        if (rule.isRefGroup()){
             return matcher.group("ref");
-        }catch(IllegalArgumentException e){
-            log.warn("[{}/{}] No ref captured with content '{}' and regexp '{}'. There may be multiple capture group but none named 'ref'.", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), rawValue, extract.getRegexp());
         }
+        log.warn("[{}/{}] No ref captured with content '{}' and regexp '{}'. There may be multiple capture group but none named 'ref'.", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), rawValue, rule.getPattern());
         return null;
     }
 
-    private String extractGlobalRef(GitHubDeployment deployment, DynamicKubernetesObject kobj) {
-        var extract=deployment.getSpec().getExtract();
-        var path=extract.getJsonPath();
-        // If container is set, trying to extract data from spec->template->spec->containers.
-        if (!Strings.isBlank(extract.getContainerName())) {
-            path=switch(deployment.getSpec().getSourceRef().getKind()){
-                case "Deployment", "ReplicaSet", "Job", "StatefulSet", "DaemonSet" ->String.format("$.spec.template.spec.containers[?(@.name == '%s')].image", extract.getContainerName().replace("'", ""));
-                case "Pod"->String.format("$.spec.containers[?(@.name == '%s')].image", extract.getContainerName().replace("'", ""));
-                case "CronJob"->String.format("$.spec.jobTemplate.spec.template.spec.containers[?(@.name == '%s')].image", extract.getContainerName().replace("'", ""));
-                default -> {
-                    log.warn("[{}/{}] The extract rule specify a container name but the source kind is not supported", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName());
-                    yield null;
-                }
-            };
+    private String extractGlobalRef(GitHubDeployment deployment, CompiledExtractRule rule, DynamicKubernetesObject kobj) {
+        // If container is set, the ref is the tag of its image.
+        if (rule.getContainerName()!=null) {
+            if (rule.getPodSpecPath()==null) {
+                return null;
+            }
+            var image=rule.readImage(kobj.getRaw());
+            if (image==null) {
+                log.warn("[{}/{}] Container {} not found in the targeted k8s object", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), rule.getContainerName());
+                return null;
+            }
+            return ImageReference.parse(image).ref();
         }
-        if (Strings.isBlank(path)) {
+
+        if (rule.getJsonPath()==null) {
             log.warn("[{}/{}] The extract rule do not specify any container nor jsonPath", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName());
             return null;
         }
 
-        Configuration conf = Configuration.builder().jsonProvider(new GsonJsonProvider())
-                .options(Option.ALWAYS_RETURN_LIST, Option.SUPPRESS_EXCEPTIONS).build();
-        JsonArray objArrJ = JsonPath.using(conf).parse(kobj.getRaw()).read(path);
+        JsonArray objArrJ = rule.read(kobj.getRaw());
 
         if (objArrJ.size() != 1) {
-            log.warn("[{}/{}] JsonPath {} not found in the targeted k8s object", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), path);
+            log.warn("[{}/{}] JsonPath {} not found in the targeted k8s object", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), rule.getPath());
             return null;
         }
         if (!objArrJ.get(0).isJsonPrimitive()) {
-            log.warn("[{}/{}] JsonPath {} retrieve a value, but it is a complex object (not a string)", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), path);
+            log.warn("[{}/{}] JsonPath {} retrieve a value, but it is a complex object (not a string)", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), rule.getPath());
             return null;
         }
-
-        String val=objArrJ.get(0).getAsString();
-
-        if (!Strings.isBlank(extract.getContainerName())) {
-            var s=val.split(":");
-            if (s.length==2) {
-                val=s[1];
-            }else{
-                val="latest";
-            }
-        }
-        return val;
+        return objArrJ.get(0).getAsString();
     }
 }
@@ -8,22 +8,35 @@ import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResu
 import com.decathlon.github.kubernetesstatus.service.transfer.TransferService;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.util.Map;
 
 @Service
 @AllArgsConstructor
 public class UpdateService {
+    /**
+     * The event could not be transferred now, it is kept in the transfer outbox and sent later.
+     */
+    public static final long QUEUED = -2;
+
     private AppProperties appProperties;
     private GitHubEnvironmentService gitHubEnvironmentService;
     private TransferService transferService;
 
-    public long executeUpdate(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload){
+    /**
+     * @param generation            the generation of the GitHub deployment resource, to tell the process node a status
+     *                              seen again is a new event.
+     * @param sourceResourceVersion the resource version of the source object the status was computed from, likewise.
+     * @return the GitHub deployment id once sent, -1 if it failed, {@link #QUEUED} if it will be sent later.
+     */
+    public Mono<Long> executeUpdate(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload,
+                                    long generation, String sourceResourceVersion){
         // Native Conditional is not resolved at runtime wihout big config change.
         if (appProperties.getMode()== AppMode.CAPTURE_AND_TRANSFER) {
-            return transferService.executeUpdate(repo, ref, env, status, payload);
+            return transferService.executeUpdate(repo, ref, env, status, payload, generation, sourceResourceVersion);
         }else{
-            return gitHubEnvironmentService.executeUpdate(repo, ref, env, status, payload);
+            return gitHubEnvironmentService.executeUpdateAsync(repo, ref, env, status, payload);
         }
     }
 }
@@ -0,0 +1,104 @@
+package com.decathlon.github.kubernetesstatus.service.extract;
+
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.GsonJsonProvider;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.logging.log4j.util.Strings;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extract rule of a GHD, with its JsonPath, regexp and template already parsed.
+ */
+@Slf4j
+@Getter
+public final class CompiledExtractRule {
+    private static final Configuration JSON_CONFIGURATION = Configuration.builder().jsonProvider(new GsonJsonProvider())
+            .options(Option.ALWAYS_RETURN_LIST, Option.SUPPRESS_EXCEPTIONS).build();
+    private static final String TEMPLATE_PLACEHOLDER = "{}";
+
+    private final long generation;
+    private final String containerName;
+    private final String[] podSpecPath;
+    private final String path;
+    private final JsonPath jsonPath;
+    private final Pattern pattern;
+    private final boolean singleGroup;
+    private final boolean refGroup;
+    private final String[] templateParts;
+
+    private CompiledExtractRule(GitHubDeployment deployment) {
+        var extract = deployment.getSpec().getExtract();
+        this.generation = deployment.getMetadata().getGeneration() != null ? deployment.getMetadata().getGeneration() : 0;
+        this.containerName = Strings.isBlank(extract.getContainerName()) ? null : extract.getContainerName();
+
+        if (containerName != null) {
+            this.podSpecPath = ContainerImageExtractor.podSpecPath(deployment.getSpec().getSourceRef().getKind());
+            if (podSpecPath == null) {
+                log.warn("[{}/{}] The extract rule specify a container name but the source kind is not supported", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName());
+            }
+            this.path = null;
+            this.jsonPath = null;
+        } else {
+            this.podSpecPath = null;
+            this.path = extract.getJsonPath();
+            this.jsonPath = Strings.isBlank(path) ? null : JsonPath.compile(path);
+        }
+
+        if (Strings.isBlank(extract.getRegexp())) {
+            this.pattern = null;
+            this.singleGroup = false;
+            this.refGroup = false;
+        } else {
+            this.pattern = Pattern.compile(extract.getRegexp());
+            this.singleGroup = pattern.matcher("").groupCount() == 1;
+            this.refGroup = pattern.namedGroups().containsKey("ref");
+        }
+
+        if (Strings.isBlank(extract.getTemplate())) {
+            this.templateParts = null;
+        } else if (extract.getTemplate().contains(TEMPLATE_PLACEHOLDER)) {
+            this.templateParts = extract.getTemplate().split(Pattern.quote(TEMPLATE_PLACEHOLDER), -1);
+        } else {
+            log.info("[{}/{}] The template {} does not contain {}, using it like a prefix", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), extract.getTemplate(), TEMPLATE_PLACEHOLDER);
+            this.templateParts = new String[]{extract.getTemplate(), ""};
+        }
+    }
+
+    public static CompiledExtractRule compile(GitHubDeployment deployment) {
+        return new CompiledExtractRule(deployment);
+    }
+
+    /**
+     * @return the image of the container, or null if there is no such container in the object.
+     */
+    public String readImage(JsonObject raw) {
+        return ContainerImageExtractor.image(raw, podSpecPath, containerName);
+    }
+
+    public JsonArray read(JsonObject raw) {
+        return JsonPath.using(JSON_CONFIGURATION).parse(raw).read(jsonPath);
+    }
+
+    /**
+     * @return a matcher on the value, already positioned on the first match, or null if it does not match.
+     */
+    public Matcher match(String value) {
+        var matcher = pattern.matcher(value);
+        return matcher.find() ? matcher : null;
+    }
+
+    public String applyTemplate(String ref) {
+        if (templateParts == null) {
+            return ref;
+        }
+        return String.join(ref, templateParts);
+    }
+}
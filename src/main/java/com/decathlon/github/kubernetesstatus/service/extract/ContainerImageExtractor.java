@@ -0,0 +1,66 @@
+package com.decathlon.github.kubernetesstatus.service.extract;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Read the image of a named container by walking directly to the pod spec of the object, without JsonPath.
+ */
+public class ContainerImageExtractor {
+    private static final String[] WORKLOAD_POD_SPEC = {"spec", "template", "spec"};
+    private static final String[] POD_SPEC = {"spec"};
+    private static final String[] CRONJOB_POD_SPEC = {"spec", "jobTemplate", "spec", "template", "spec"};
+    private static final String[] CONTAINER_LISTS = {"containers", "initContainers"};
+
+    private ContainerImageExtractor() {
+        // no instance
+    }
+
+    /**
+     * @return the path to the pod spec for this kind, or null if the kind does not hold a pod spec.
+     */
+    public static String[] podSpecPath(String kind) {
+        return switch (kind) {
+            case "Deployment", "ReplicaSet", "Job", "StatefulSet", "DaemonSet" -> WORKLOAD_POD_SPEC;
+            case "Pod" -> POD_SPEC;
+            case "CronJob" -> CRONJOB_POD_SPEC;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the image of the container (or init container) with this name, or null if not found.
+     */
+    public static String image(JsonObject raw, String[] podSpecPath, String containerName) {
+        JsonElement node = raw;
+        for (var field : podSpecPath) {
+            if (node == null || !node.isJsonObject()) {
+                return null;
+            }
+            node = node.getAsJsonObject().get(field);
+        }
+        if (node == null || !node.isJsonObject()) {
+            return null;
+        }
+        var podSpec = node.getAsJsonObject();
+
+        for (var list : CONTAINER_LISTS) {
+            var containers = podSpec.get(list);
+            if (containers == null || !containers.isJsonArray()) {
+                continue;
+            }
+            for (var container : containers.getAsJsonArray()) {
+                if (!container.isJsonObject()) {
+                    continue;
+                }
+                var c = container.getAsJsonObject();
+                var name = c.get("name");
+                if (name != null && name.isJsonPrimitive() && containerName.equals(name.getAsString())) {
+                    var image = c.get("image");
+                    return image != null && image.isJsonPrimitive() ? image.getAsString() : null;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.decathlon.github.kubernetesstatus.service.extract;
+
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled extract rules by GHD uid. A rule is compiled again when the GHD generation changes (spec updated),
+ * and dropped when the GHD is deleted.
+ */
+@Service
+public class ExtractRuleCache {
+    private final Map<String, CompiledExtractRule> rules = new ConcurrentHashMap<>();
+
+    public CompiledExtractRule get(GitHubDeployment deployment) {
+        var uid = deployment.getMetadata().getUid();
+        var generation = deployment.getMetadata().getGeneration();
+        if (uid == null || generation == null) {
+            // Not a GHD read from the cluster, nothing reliable to cache it on.
+            return CompiledExtractRule.compile(deployment);
+        }
+        var rule = rules.get(uid);
+        if (rule == null || rule.getGeneration() != generation) {
+            rule = CompiledExtractRule.compile(deployment);
+            rules.put(uid, rule);
+        }
+        return rule;
+    }
+
+    public void evict(String uid) {
+        if (uid != null) {
+            rules.remove(uid);
+        }
+    }
+
+    public int size() {
+        return rules.size();
+    }
+}
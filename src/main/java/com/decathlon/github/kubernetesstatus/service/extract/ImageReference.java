@@ -0,0 +1,55 @@
+package com.decathlon.github.kubernetesstatus.service.extract;
+
+/**
+ * A container image reference: [registry[:port]/]repository[:tag][@digest].
+ */
+public record ImageReference(String registry, String repository, String tag, String digest) {
+    private static final String DEFAULT_TAG = "latest";
+
+    public static ImageReference parse(String image) {
+        var name = image;
+        String digest = null;
+        int at = name.indexOf('@');
+        if (at >= 0) {
+            digest = name.substring(at + 1);
+            name = name.substring(0, at);
+        }
+
+        // A ':' before the last '/' is a registry port, not a tag.
+        String tag = null;
+        int colon = name.lastIndexOf(':');
+        if (colon > name.lastIndexOf('/')) {
+            tag = name.substring(colon + 1);
+            name = name.substring(0, colon);
+        }
+
+        String registry = null;
+        int slash = name.indexOf('/');
+        if (slash > 0) {
+            var first = name.substring(0, slash);
+            if (first.indexOf('.') >= 0 || first.indexOf(':') >= 0 || first.equals("localhost")) {
+                registry = first;
+                name = name.substring(slash + 1);
+            }
+        }
+        return new ImageReference(registry, name, emptyToNull(tag), emptyToNull(digest));
+    }
+
+    /**
+     * @return the ref to use for the GitHub deployment: the tag, else the digest value (without algorithm), else 'latest'.
+     */
+    public String ref() {
+        if (tag != null) {
+            return tag;
+        }
+        if (digest != null) {
+            int colon = digest.indexOf(':');
+            return colon >= 0 ? digest.substring(colon + 1) : digest;
+        }
+        return DEFAULT_TAG;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
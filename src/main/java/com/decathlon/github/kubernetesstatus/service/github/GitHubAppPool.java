@@ -0,0 +1,139 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The GitHub credentials requests can be sent with: the PAT, or the configured GitHub apps, each with its own budget.
+ * <p>
+ * A repository always uses the same app, so its deployments and statuses are written by the same author, until this
+ * app is under the rate limit reserve: the next app with some budget left is then used.
+ */
+@Component
+public class GitHubAppPool {
+    private static final String TOKEN_PREFIX = "token ";
+
+    /**
+     * A credential and what is left of its hourly budget.
+     */
+    public static final class Member {
+        private final String name;
+        private final AppProperties.GithubAppProperties app;
+        private final RateLimitBudget budget;
+
+        private Member(String name, AppProperties.GithubAppProperties app, RateLimitBudget budget) {
+            this.name = name;
+            this.app = app;
+            this.budget = budget;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the app, null when requests use the PAT.
+         */
+        public AppProperties.GithubAppProperties getApp() {
+            return app;
+        }
+
+        public RateLimitBudget getBudget() {
+            return budget;
+        }
+    }
+
+    private final List<Member> members = new ArrayList<>();
+    private final Map<String, Member> byToken = new ConcurrentHashMap<>();
+
+    public GitHubAppPool(AppProperties appProperties, MeterRegistry meterRegistry) {
+        var github = appProperties.getGithub();
+        var reserve = github.getRateLimit().getReserve();
+
+        if (Strings.isNotBlank(github.getToken())) {
+            members.add(new Member("token", null, new RateLimitBudget(reserve, Clock.systemUTC())));
+        } else {
+            var apps = new ArrayList<AppProperties.GithubAppProperties>();
+            if (github.getApp() != null && Strings.isNotBlank(github.getApp().getPrivateKey())) {
+                apps.add(github.getApp());
+            }
+            apps.addAll(github.getApps());
+            apps.forEach(app -> members.add(new Member("app-" + app.getId(), app, new RateLimitBudget(reserve, Clock.systemUTC()))));
+        }
+        if (members.isEmpty()) {
+            // No GitHub credential, the requests are sent without authentication
+            members.add(new Member("anonymous", null, new RateLimitBudget(reserve, Clock.systemUTC())));
+        }
+
+        for (var member : members) {
+            Gauge.builder("github.ratelimit.remaining", member.budget, RateLimitBudget::remaining)
+                    .description("Remaining GitHub requests before the rate limit reset")
+                    .tag("app", member.name)
+                    .register(meterRegistry);
+            Gauge.builder("github.ratelimit.limit", member.budget, RateLimitBudget::limit)
+                    .tag("app", member.name)
+                    .register(meterRegistry);
+        }
+    }
+
+    public List<Member> members() {
+        return List.copyOf(members);
+    }
+
+    /**
+     * @param key the repository (org/name), or the organization, the request is about.
+     * @return the members to try, in order: the one of this key first, the ones under their reserve last.
+     */
+    public List<Member> candidates(String key) {
+        var preferred = Math.floorMod(key.hashCode(), members.size());
+        var ordered = new ArrayList<Member>(members.size());
+        var waits = new HashMap<Member, Duration>();
+        for (int i = 0; i < members.size(); i++) {
+            var member = members.get((preferred + i) % members.size());
+            ordered.add(member);
+            waits.put(member, member.budget.delay(false).isZero() ? Duration.ZERO : member.budget.delay(true));
+        }
+        // Stable sort: the members with a budget keep the sticky order, the others come by shortest wait.
+        ordered.sort(Comparator.comparing(waits::get));
+        return ordered;
+    }
+
+    public Member select(String key) {
+        return candidates(key).get(0);
+    }
+
+    /**
+     * Record the member a token was issued for, so its responses update the right budget.
+     */
+    public void bind(String token, Member member, String previousToken) {
+        byToken.put(token, member);
+        if (previousToken != null && !previousToken.equals(token)) {
+            byToken.remove(previousToken);
+        }
+    }
+
+    /**
+     * @return the member that issued the token of this Authorization header, the first one if unknown.
+     */
+    public Member memberOf(String authorization) {
+        if (authorization != null && authorization.startsWith(TOKEN_PREFIX)) {
+            var member = byToken.get(authorization.substring(TOKEN_PREFIX.length()));
+            if (member != null) {
+                return member;
+            }
+        }
+        return members.get(0);
+    }
+}
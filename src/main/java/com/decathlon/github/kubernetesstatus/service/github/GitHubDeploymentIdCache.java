@@ -0,0 +1,48 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+
+/**
+ * GitHub deployment id by (repository, environment, ref), so a known deployment is not searched again on GitHub.
+ */
+@Service
+public class GitHubDeploymentIdCache {
+    private final Cache<String, Long> ids;
+
+    public GitHubDeploymentIdCache(AppProperties appProperties, MeterRegistry meterRegistry) {
+        var properties = appProperties.getGithub().getDeploymentCache();
+        this.ids = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl())
+                .maximumSize(properties.getMaxSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, ids, "github.deployments");
+    }
+
+    private static String key(String repo, String environment, String ref) {
+        return repo + "|" + environment + "|" + ref;
+    }
+
+    /**
+     * @return the deployment id, or -1 if unknown.
+     */
+    public long get(String repo, String environment, String ref) {
+        var id = ids.getIfPresent(key(repo, environment, ref));
+        return id != null ? id : -1;
+    }
+
+    public void put(String repo, String environment, String ref, long id) {
+        if (id > 0) {
+            ids.put(key(repo, environment, ref), id);
+        }
+    }
+
+    public void invalidate(String repo, String environment, String ref) {
+        ids.invalidate(key(repo, environment, ref));
+    }
+}
@@ -0,0 +1,201 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * Conditional GET on GitHub: the last body of each URL is kept with its ETag, sent back as If-None-Match, and served
+ * again when GitHub answers 304 Not Modified (which does not count in the rate limit).
+ * <p>
+ * Used by the {@code RestTemplate} as an interceptor and by the {@code WebClient} through {@link #filter()}.
+ */
+@Component
+public class GitHubETagCache implements ClientHttpRequestInterceptor {
+    private record Entry(String etag, HttpHeaders headers, byte[] body) { }
+
+    private final String githubHost;
+    private final Cache<String, Entry> entries;
+    private final Counter notModified;
+    private final Counter modified;
+
+    public GitHubETagCache(AppProperties appProperties, MeterRegistry meterRegistry) {
+        var properties = appProperties.getGithub().getEtagCache();
+        this.githubHost = URI.create(appProperties.getGithub().getGithubApi()).getHost();
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl())
+                .maximumSize(properties.getMaxSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "github.etags");
+        this.notModified = Counter.builder("github.etag.requests").tag("result", "not_modified").register(meterRegistry);
+        this.modified = Counter.builder("github.etag.requests").tag("result", "modified").register(meterRegistry);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (request.getMethod() != HttpMethod.GET || !githubHost.equals(request.getURI().getHost())) {
+            return execution.execute(request, body);
+        }
+
+        var key = request.getURI().toString();
+        var cached = entries.getIfPresent(key);
+        if (cached != null) {
+            request.getHeaders().setIfNoneMatch(cached.etag());
+        }
+
+        var response = execution.execute(request, body);
+        if (cached != null && response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+            notModified.increment();
+            return new BufferedResponse(HttpStatus.OK, refresh(cached.headers(), response.getHeaders()), cached.body(), response);
+        }
+        if (cached != null) {
+            modified.increment();
+        }
+
+        var etag = response.getHeaders().getETag();
+        if (etag == null || !response.getStatusCode().is2xxSuccessful()) {
+            return response;
+        }
+        var content = response.getBody().readAllBytes();
+        var headers = buffered(response.getHeaders(), content.length);
+        entries.put(key, new Entry(etag, headers, content));
+        return new BufferedResponse(response.getStatusCode(), headers, content, response);
+    }
+
+    /**
+     * @return the same cache as a {@code WebClient} filter.
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> {
+            if (request.method() != HttpMethod.GET || !githubHost.equals(request.url().getHost())) {
+                return next.exchange(request);
+            }
+
+            var key = request.url().toString();
+            var cached = entries.getIfPresent(key);
+            var sent = cached == null ? request
+                    : ClientRequest.from(request).headers(headers -> headers.setIfNoneMatch(cached.etag())).build();
+
+            return next.exchange(sent).map(response -> {
+                if (cached != null && response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                    notModified.increment();
+                    var headers = refresh(cached.headers(), response.headers().asHttpHeaders());
+                    return response.mutate()
+                            .statusCode(HttpStatus.OK)
+                            .headers(h -> {
+                                h.clear();
+                                h.putAll(headers);
+                            })
+                            .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(cached.body())))
+                            .build();
+                }
+                if (cached != null) {
+                    modified.increment();
+                }
+
+                var etag = response.headers().asHttpHeaders().getETag();
+                if (etag == null || !response.statusCode().is2xxSuccessful()) {
+                    return response;
+                }
+                // Cached once read by the caller
+                return response.mutate()
+                        .body(body -> DataBufferUtils.join(body)
+                                .map(buffer -> {
+                                    var content = new byte[buffer.readableByteCount()];
+                                    buffer.read(content);
+                                    DataBufferUtils.release(buffer);
+                                    entries.put(key, new Entry(etag, buffered(response.headers().asHttpHeaders(), content.length), content));
+                                    return DefaultDataBufferFactory.sharedInstance.wrap(content);
+                                })
+                                .flux())
+                        .build();
+            });
+        };
+    }
+
+    /**
+     * @return the headers of a body read in full: its length instead of how it was transferred.
+     */
+    static HttpHeaders buffered(HttpHeaders original, long length) {
+        var headers = new HttpHeaders();
+        headers.putAll(original);
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        headers.setContentLength(length);
+        return headers;
+    }
+
+    /**
+     * @return the cached headers, with the fresh rate limit and ETag headers of the 304. The others (length...) are
+     * about the empty 304 body, not the cached one.
+     */
+    static HttpHeaders refresh(HttpHeaders cached, HttpHeaders notModified) {
+        var headers = new HttpHeaders();
+        headers.putAll(cached);
+        notModified.forEach((name, values) -> {
+            if (isFresh(name)) {
+                headers.put(name, values);
+            }
+        });
+        return headers;
+    }
+
+    private static boolean isFresh(String name) {
+        var lower = name.toLowerCase(Locale.ROOT);
+        return lower.startsWith("x-ratelimit-") || lower.equals("retry-after") || lower.equals("etag");
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    private record BufferedResponse(HttpStatusCode status, HttpHeaders headers, byte[] content, ClientHttpResponse original) implements ClientHttpResponse {
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return status;
+        }
+
+        @Override
+        public String getStatusText() {
+            return status instanceof HttpStatus httpStatus ? httpStatus.getReasonPhrase() : "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public void close() {
+            original.close();
+        }
+    }
+}
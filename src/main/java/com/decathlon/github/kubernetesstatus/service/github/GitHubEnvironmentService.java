@@ -1,51 +1,74 @@
 package com.decathlon.github.kubernetesstatus.service.github;
 
-import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.logging.log4j.util.Strings;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 
 import java.nio.charset.Charset;
-import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 @Service
 @AllArgsConstructor
 @Slf4j
 public class GitHubEnvironmentService {
     private static final String ENV_URL_SUFFIX = "url";
-    private static final LinkedList<String> cachedError = new LinkedList<>();
 
-    private ObjectMapper mapper;
     private RestTemplate restTemplate;
-    private AppProperties appProperties;
+    private GitHubRequests requests;
+    private GitHubReactiveClient reactiveClient;
+    private GitHubErrorCache errorCache;
+    private GitHubDeploymentIdCache deploymentIdCache;
+    private GitHubStatusDebouncer statusDebouncer;
 
     public long executeUpdate(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload) {
         try {
+            var org = requests.org(repo);
+            // Cache keys: the same repository name may exist in several organizations
+            var fullName = org + "/" + repo.getName();
+            if (env < 0) {
+                env = deploymentIdCache.get(fullName, repo.getEnvironment(), ref);
+            }
             if (env < 0) {
                 // New environment ?  check if there is not already an environment with the same ref
-                env = getDeploymentId(repo.getName(), repo.getEnvironment(), ref);
+                env = getDeploymentId(org, repo.getName(), repo.getEnvironment(), ref);
             }
             if (env < 0) {
-                env = createDeployment(repo.getName(), repo.getEnvironment(), ref, payload);
+                env = createDeployment(org, repo.getName(), repo.getEnvironment(), ref, payload);
             }
 
             if (env > 0) {
+                deploymentIdCache.put(fullName, repo.getEnvironment(), ref, env);
                 var envUrl = payload.getOrDefault(ENV_URL_SUFFIX, "");
-                updateDeployment(repo.getName(), env, repo.getEnvironment(), status.status(), envUrl);
+                long deployId = env;
+                var posted = statusDebouncer.submit(fullName + "|" + deployId, status.status(), () -> {
+                    try {
+                        updateDeployment(org, repo.getName(), deployId, repo.getEnvironment(), status.status(), envUrl);
+                    } catch (HttpClientErrorException.NotFound deleted) {
+                        // The deployment does not exist anymore on GitHub
+                        deploymentIdCache.invalidate(fullName, repo.getEnvironment(), ref);
+                        throw deleted;
+                    }
+                });
+                // A final status is only reported as done once GitHub got it, a held one is posted later
+                try {
+                    posted.join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
             }
             return env;
         }catch(HttpClientErrorException ghFailure){
@@ -53,14 +76,15 @@ public class GitHubEnvironmentService {
         }
     }
 
-    private long getDeploymentId(String repo, String env, String ref) {
-        var gh = appProperties.getGithub();
-        var uriBuilder=UriComponentsBuilder.fromHttpUrl(gh.getGithubApi())
-                .pathSegment("repos", gh.getOrgs(), repo, "deployments")
-                .queryParam("ref", ref)
-                .queryParam("environment", env);
+    /**
+     * Same as {@link #executeUpdate}, without blocking a thread during the GitHub calls.
+     */
+    public Mono<Long> executeUpdateAsync(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload) {
+        return reactiveClient.executeUpdate(repo, ref, env, status, payload);
+    }
 
-        var ret = restTemplate.exchange(uriBuilder.toUriString(), HttpMethod.GET, null, JsonNode.class);
+    private long getDeploymentId(String org, String repo, String env, String ref) {
+        var ret = restTemplate.exchange(requests.deploymentLookupUrl(org, repo, env, ref), HttpMethod.GET, null, JsonNode.class);
 
         var body = ret.getBody();
         if (body != null && body.size() > 0) {
@@ -70,32 +94,15 @@ public class GitHubEnvironmentService {
         return -1;
     }
 
-    private long createDeployment(String repo, String environment, String ref, Map<String, String> payload) {
-        String key= repo + "|"+environment + "|" + ref;
-        if (cachedError.contains(key)) {
-            throw new GitHubException(422, "An error 422 was returned by GitHub on this exact same request. We will not try again until a small duration.");
+    private long createDeployment(String org, String repo, String environment, String ref, Map<String, String> payload) {
+        String key= GitHubErrorCache.key(org + "/" + repo, environment, ref);
+        if (errorCache.contains(key)) {
+            throw new GitHubException(422, GitHubRequests.ALREADY_FAILED);
         }
-        var gh = appProperties.getGithub();
-        var uriBuilder=UriComponentsBuilder.fromHttpUrl(gh.getGithubApi())
-                .pathSegment("repos", gh.getOrgs(), repo, "deployments");
 
-        ObjectNode json = mapper.createObjectNode();
-
-        var payloadNode = mapper.createObjectNode();
-        payload.forEach(payloadNode::put);
-
-        json.put("ref", ref);
-        json.put("environment", environment);
-        json.put("auto_merge", false);
-        json.set("required_contexts", mapper.createArrayNode());
-        json.set("payload", payloadNode);
-        json.put("description", "Deployment triggered via Flux");
-        json.put("transient_environment", false);
-        json.put("production_environment", false);
-
-        var requestEntity = new HttpEntity<>(json);
+        var requestEntity = new HttpEntity<>(requests.deploymentBody(environment, ref, payload));
         try {
-            var ret = restTemplate.exchange(uriBuilder.toUriString(), HttpMethod.POST, requestEntity, JsonNode.class);
+            var ret = restTemplate.exchange(requests.deploymentsUrl(org, repo), HttpMethod.POST, requestEntity, JsonNode.class);
             var body = ret.getBody();
             if (body == null) {
                 return -1;
@@ -118,45 +125,14 @@ public class GitHubEnvironmentService {
             log.error("Unable to create deployment for {} on repo {} and environment {}: {}/{}", ref, repo, environment, clientError.getStatusCode(), clientError.getStatusText());
             // If it is a 422, it means that ref is invalid.
             if (clientError.getStatusCode().value()==422) {
-                cachedError.add(key);
-                if (cachedError.size() > 1000) {
-                    cachedError.removeFirst();
-                }
+                errorCache.add(key);
             }
             throw clientError;
         }
     }
 
-    private void updateDeployment(String repo, long deployId, String environment, KubeObjectStatus status, String envUrl) {
-        var gh = appProperties.getGithub();
-        var uriBuilder=UriComponentsBuilder.fromHttpUrl(gh.getGithubApi())
-                .pathSegment("repos", gh.getOrgs(), repo, "deployments", String.valueOf(deployId),"statuses");
-
-        // GH State:
-        // error, failure, inactive, in_progress, queued, pending, or success
-        String state =
-                switch (status) {
-                    case IN_PROGRESS -> "in_progress";
-                    case CURRENT -> "success";
-                    case FAILED -> "failure";
-                    case TERMINATING -> "inactive";
-                    case UNKNOWN -> "pending";
-                };
-
-
-        ObjectNode json = mapper.createObjectNode();
-        json.put("state", state);
-        json.put("description", "Deployment via flux");
-        json.put("environment", environment);
-
-        if (status != KubeObjectStatus.IN_PROGRESS && status != KubeObjectStatus.UNKNOWN) {
-            json.put("auto_inactive", true);
-            if (Strings.isNotBlank(envUrl)) {
-                json.put("environment_url", envUrl);
-            }
-        }
-
-        var requestEntity = new HttpEntity<>(json);
-        restTemplate.exchange(uriBuilder.toUriString(), HttpMethod.POST, requestEntity, JsonNode.class);
+    private void updateDeployment(String org, String repo, long deployId, String environment, KubeObjectStatus status, String envUrl) {
+        var requestEntity = new HttpEntity<>(requests.statusBody(environment, status, envUrl));
+        restTemplate.exchange(requests.statusesUrl(org, repo, deployId), HttpMethod.POST, requestEntity, JsonNode.class);
     }
 }
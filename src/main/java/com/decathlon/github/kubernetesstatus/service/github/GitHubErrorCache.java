@@ -0,0 +1,61 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Requests refused by GitHub with a 422 (invalid ref...). They are not sent again until the entry expires.
+ */
+@Service
+public class GitHubErrorCache {
+    private final Cache<String, Instant> errors;
+
+    public GitHubErrorCache(AppProperties appProperties, MeterRegistry meterRegistry) {
+        var properties = appProperties.getGithub().getErrorCache();
+        this.errors = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl())
+                .maximumSize(properties.getMaxSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, errors, "github.errors");
+    }
+
+    public static String key(String repo, String environment, String ref) {
+        return repo + "|" + environment + "|" + ref;
+    }
+
+    public boolean contains(String key) {
+        return errors.getIfPresent(key) != null;
+    }
+
+    public void add(String key) {
+        errors.put(key, Instant.now());
+    }
+
+    /**
+     * @return the cached requests, with the date GitHub refused them.
+     */
+    public Map<String, Instant> entries() {
+        return Map.copyOf(errors.asMap());
+    }
+
+    public CacheStats stats() {
+        return errors.stats();
+    }
+
+    public void invalidate(String key) {
+        errors.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        errors.invalidateAll();
+    }
+}
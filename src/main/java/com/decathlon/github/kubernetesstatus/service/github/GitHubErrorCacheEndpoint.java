@@ -0,0 +1,44 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Inspect and clear the requests refused by GitHub: GET /actuator/githuberrors, DELETE /actuator/githuberrors[/{key}],
+ * the key being given as is, '/' included.
+ */
+@Component
+@Endpoint(id = "githuberrors")
+@AllArgsConstructor
+public class GitHubErrorCacheEndpoint {
+    private GitHubErrorCache errorCache;
+
+    public record ErrorCacheContent(long size, long hits, long misses, long evictions, Map<String, Instant> entries) { }
+
+    @ReadOperation
+    public ErrorCacheContent content() {
+        var entries = errorCache.entries();
+        var stats = errorCache.stats();
+        return new ErrorCacheContent(entries.size(), stats.hitCount(), stats.missCount(), stats.evictionCount(), entries);
+    }
+
+    @DeleteOperation
+    public void clear() {
+        errorCache.invalidateAll();
+    }
+
+    /**
+     * @param key the path segments of the key, which contains '/' (org/repo, refs like feature/x).
+     */
+    @DeleteOperation
+    public void clearEntry(@Selector(match = Selector.Match.ALL_REMAINING) String[] key) {
+        errorCache.invalidate(String.join("/", key));
+    }
+}
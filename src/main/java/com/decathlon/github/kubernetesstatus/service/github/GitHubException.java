@@ -3,6 +3,7 @@ package com.decathlon.github.kubernetesstatus.service.github;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 public class GitHubException extends RuntimeException {
     private final int statusCode;
@@ -24,14 +25,24 @@ public class GitHubException extends RuntimeException {
         this.statusCode = e.getStatusCode().value();
     }
 
+    public GitHubException(WebClientResponseException e) {
+        super(e);
+        this.response=processException(e.getResponseBodyAsString(), e.getMessage());
+        this.statusCode = e.getStatusCode().value();
+    }
+
     private JsonNode processException(HttpClientErrorException e) {
+        return processException(e.getResponseBodyAsString(), e.getMessage());
+    }
+
+    private JsonNode processException(String body, String message) {
         ObjectMapper objetMapper=new ObjectMapper();
 
         try{
-            return objetMapper.readTree(e.getResponseBodyAsString());
+            return objetMapper.readTree(body);
         }catch(Exception notJson){
             var temp=objetMapper.createObjectNode();
-            temp.put("message",e.getMessage());
+            temp.put("message",message);
             return temp;
         }
     }
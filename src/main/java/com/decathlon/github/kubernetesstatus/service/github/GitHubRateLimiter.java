@@ -0,0 +1,100 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Pace the requests sent to GitHub according to its rate limit headers.
+ * Reads (deployment lookups) give way to writes (deployments, statuses and tokens) when the budget is low.
+ * Each GitHub app has its own budget, found from the token of the request: it must run after the token is set.
+ * Requests authenticated as the app itself (JWT, to get installation tokens) are not paced: they do not count in the
+ * installation budgets, and must go through when an app runs out to fail over to the others.
+ */
+@Component
+@Slf4j
+public class GitHubRateLimiter implements ClientHttpRequestInterceptor {
+    private final AppProperties.RateLimitProperties properties;
+    private final String githubHost;
+    private final GitHubAppPool pool;
+
+    public GitHubRateLimiter(AppProperties appProperties, GitHubAppPool pool) {
+        this.properties = appProperties.getGithub().getRateLimit();
+        this.githubHost = URI.create(appProperties.getGithub().getGithubApi()).getHost();
+        this.pool = pool;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        var authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (!isPaced(request.getURI(), authorization)) {
+            return execution.execute(request, body);
+        }
+
+        var budget = pool.memberOf(authorization).getBudget();
+        var delay = budget.delay(request.getMethod() != HttpMethod.GET);
+        if (delay.compareTo(properties.getMaxWait()) > 0) {
+            throw new GitHubException(429, "GitHub rate limit reached, requests are paused for " + delay.toSeconds() + "s.");
+        }
+        pause(budget, delay);
+        budget.consume();
+
+        var response = execution.execute(request, body);
+        budget.update(response.getHeaders(), response.getStatusCode().value());
+        return response;
+    }
+
+    /**
+     * The same pacing for a WebClient, waiting without blocking a thread.
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> {
+            var authorization = request.headers().getFirst(HttpHeaders.AUTHORIZATION);
+            if (!isPaced(request.url(), authorization)) {
+                return next.exchange(request);
+            }
+            var budget = pool.memberOf(authorization).getBudget();
+            var delay = budget.delay(request.method() != HttpMethod.GET);
+            if (delay.compareTo(properties.getMaxWait()) > 0) {
+                return Mono.error(new GitHubException(429, "GitHub rate limit reached, requests are paused for " + delay.toSeconds() + "s."));
+            }
+            var wait = delay.isZero() || delay.isNegative() ? Mono.<Long>empty() : Mono.delay(delay);
+            return wait.then(Mono.defer(() -> {
+                budget.consume();
+                return next.exchange(request);
+            })).doOnNext(response -> budget.update(response.headers().asHttpHeaders(), response.statusCode().value()));
+        };
+    }
+
+    private boolean isPaced(URI uri, String authorization) {
+        // Requests authenticated as the app (JWT) have their own budget
+        return properties.isEnabled() && githubHost.equals(uri.getHost())
+                && (authorization == null || !authorization.startsWith("Bearer "));
+    }
+
+    private void pause(RateLimitBudget budget, Duration delay) throws InterruptedIOException {
+        if (delay.isZero() || delay.isNegative()) {
+            return;
+        }
+        log.debug("GitHub budget is low ({} left), waiting {}ms", budget.remaining(), delay.toMillis());
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the GitHub rate limit");
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Non-blocking GitHub deployment client: lookup, creation and status are chained in a single pipeline, so no thread is
+ * held while waiting for GitHub.
+ */
+@Service
+@Slf4j
+public class GitHubReactiveClient {
+    private static final String ENV_URL_SUFFIX = "url";
+
+    private final WebClient webClient;
+    private final GitHubRequests requests;
+    private final GitHubErrorCache errorCache;
+    private final GitHubDeploymentIdCache deploymentIdCache;
+    private final GitHubStatusDebouncer statusDebouncer;
+
+    public GitHubReactiveClient(WebClient.Builder builder,
+                                AppProperties appProperties,
+                                GitHubTokenService tokenService,
+                                GitHubRateLimiter rateLimiter,
+                                GitHubETagCache etagCache,
+                                GitHubRequests requests,
+                                GitHubErrorCache errorCache,
+                                GitHubDeploymentIdCache deploymentIdCache,
+                                GitHubStatusDebouncer statusDebouncer) {
+        this.requests = requests;
+        this.errorCache = errorCache;
+        this.deploymentIdCache = deploymentIdCache;
+        this.statusDebouncer = statusDebouncer;
+        this.webClient = builder.clone()
+                .clientConnector(connector(appProperties.getGithub()))
+                // Authentication first, so the rate limiter knows the app of the request
+                .filter(authentication(tokenService))
+                .filter(rateLimiter.filter())
+                .filter(etagCache.filter())
+                .build();
+    }
+
+    private static ReactorClientHttpConnector connector(AppProperties.GitHubProperties github) {
+        var http = github.getHttp();
+        var provider = ConnectionProvider.builder("github")
+                .maxConnections(http.getMaxTotal())
+                .maxLifeTime(http.getConnectionTtl())
+                .maxIdleTime(http.getIdleEviction())
+                .evictInBackground(http.getIdleEviction())
+                .pendingAcquireTimeout(http.getConnectTimeout())
+                .metrics(true)
+                .build();
+
+        var httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) http.getConnectTimeout().toMillis())
+                .responseTimeout(http.getSocketTimeout())
+                .proxyWithSystemProperties();
+        // HTTP/2 is negotiated with TLS (ALPN), so only for an https API
+        if (http.isHttp2() && github.getGithubApi().startsWith("https")) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    private static ExchangeFilterFunction authentication(GitHubTokenService tokenService) {
+        // The token is cached: only its renewal blocks, so it is done out of the event loop.
+        return (request, next) -> Mono.fromCallable(() -> tokenService.createToken(request.url()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(token -> ClientRequest.from(request).headers(headers -> headers.set(HttpHeaders.AUTHORIZATION, "token " + token)).build())
+                .flatMap(next::exchange);
+    }
+
+    public Mono<Long> executeUpdate(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload) {
+        return Mono.fromSupplier(() -> requests.org(repo))
+                .flatMap(org -> executeUpdate(org, repo, ref, env, status, payload))
+                .onErrorMap(WebClientResponseException.class, GitHubException::new);
+    }
+
+    private Mono<Long> executeUpdate(String org, GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload) {
+        // Cache keys: the same repository name may exist in several organizations
+        var fullName = org + "/" + repo.getName();
+        Mono<Long> deployId = env >= 0 ? Mono.just(env) : Mono.fromSupplier(() -> deploymentIdCache.get(fullName, repo.getEnvironment(), ref))
+                // New environment ?  check if there is not already an environment with the same ref
+                .flatMap(cached -> cached >= 0 ? Mono.just(cached) : getDeploymentId(org, repo.getName(), repo.getEnvironment(), ref))
+                .flatMap(found -> found >= 0 ? Mono.just(found) : createDeployment(org, repo.getName(), repo.getEnvironment(), ref, payload));
+
+        return deployId
+                .flatMap(id -> {
+                    if (id <= 0) {
+                        return Mono.just(id);
+                    }
+                    deploymentIdCache.put(fullName, repo.getEnvironment(), ref, id);
+                    var envUrl = payload.getOrDefault(ENV_URL_SUFFIX, "");
+                    return statusDebouncer.submitAsync(fullName + "|" + id, status.status(),
+                                    () -> updateDeployment(org, repo.getName(), id, repo.getEnvironment(), ref, status.status(), envUrl))
+                            .thenReturn(id);
+                });
+    }
+
+    private Mono<Long> getDeploymentId(String org, String repo, String env, String ref) {
+        return webClient.get()
+                .uri(URI.create(requests.deploymentLookupUrl(org, repo, env, ref)))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(body -> body.size() > 0 ? body.get(0).get("id").asLong() : -1L)
+                .defaultIfEmpty(-1L);
+    }
+
+    private Mono<Long> createDeployment(String org, String repo, String environment, String ref, Map<String, String> payload) {
+        String key = GitHubErrorCache.key(org + "/" + repo, environment, ref);
+        return Mono.defer(() -> {
+            if (errorCache.contains(key)) {
+                return Mono.error(new GitHubException(422, GitHubRequests.ALREADY_FAILED));
+            }
+            return webClient.post()
+                    .uri(URI.create(requests.deploymentsUrl(org, repo)))
+                    .bodyValue(requests.deploymentBody(environment, ref, payload))
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .flatMap(body -> {
+                        if (body.has("id")) {
+                            return Mono.just(body.get("id").asLong());
+                        }
+                        errorCache.add(key);
+                        return Mono.error(new GitHubException(422, body.has("message")
+                                ? "Error when creating deployment: " + body.get("message").asText()
+                                : "Error when creating deployment."));
+                    })
+                    .defaultIfEmpty(-1L)
+                    .onErrorResume(WebClientResponseException.NotFound.class, notFound -> {
+                        // Not found => the ref is invalid or something like that.
+                        log.error("Unable to create deployment for {} on repo {}", ref, repo);
+                        return Mono.just(-1L);
+                    })
+                    .doOnError(WebClientResponseException.class, clientError -> {
+                        log.error("Unable to create deployment for {} on repo {} and environment {}: {}/{}", ref, repo, environment, clientError.getStatusCode(), clientError.getStatusText());
+                        // If it is a 422, it means that ref is invalid.
+                        if (clientError.getStatusCode().value() == 422) {
+                            errorCache.add(key);
+                        }
+                    });
+        });
+    }
+
+    private Mono<Void> updateDeployment(String org, String repo, long deployId, String environment, String ref, KubeObjectStatus status, String envUrl) {
+        return webClient.post()
+                .uri(URI.create(requests.statusesUrl(org, repo, deployId)))
+                .bodyValue(requests.statusBody(environment, status, envUrl))
+                .retrieve()
+                .toBodilessEntity()
+                .then()
+                // The deployment does not exist anymore on GitHub
+                .doOnError(WebClientResponseException.NotFound.class, deleted -> deploymentIdCache.invalidate(org + "/" + repo, environment, ref));
+    }
+}
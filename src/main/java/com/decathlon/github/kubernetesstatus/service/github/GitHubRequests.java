@@ -0,0 +1,103 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AllArgsConstructor;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * URLs and bodies of the GitHub deployment API, shared by the blocking and the reactive clients.
+ */
+@Component
+@AllArgsConstructor
+public class GitHubRequests {
+    static final String ALREADY_FAILED = "An error 422 was returned by GitHub on this exact same request. We will not try again until a small duration.";
+
+    private ObjectMapper mapper;
+    private AppProperties appProperties;
+
+    /**
+     * @return the organization of the repository: its own if set, else the default one.
+     * @throws GitHubException if the organization is not one of app.github.orgs
+     */
+    public String org(GitHubDeploymentSpec.RepositoryDetail repo) {
+        var orgs = appProperties.getGithub().orgList();
+        if (Strings.isBlank(repo.getOrg())) {
+            return orgs.get(0);
+        }
+        return orgs.stream()
+                .filter(repo.getOrg()::equalsIgnoreCase)
+                .findFirst()
+                .orElseThrow(() -> new GitHubException(403, "Organization " + repo.getOrg() + " is not one of " + orgs + "."));
+    }
+
+    public String deploymentsUrl(String org, String repo) {
+        return UriComponentsBuilder.fromHttpUrl(appProperties.getGithub().getGithubApi())
+                .pathSegment("repos", org, repo, "deployments")
+                .toUriString();
+    }
+
+    public String deploymentLookupUrl(String org, String repo, String env, String ref) {
+        return UriComponentsBuilder.fromHttpUrl(appProperties.getGithub().getGithubApi())
+                .pathSegment("repos", org, repo, "deployments")
+                .queryParam("ref", ref)
+                .queryParam("environment", env)
+                .toUriString();
+    }
+
+    public String statusesUrl(String org, String repo, long deployId) {
+        return UriComponentsBuilder.fromHttpUrl(appProperties.getGithub().getGithubApi())
+                .pathSegment("repos", org, repo, "deployments", String.valueOf(deployId), "statuses")
+                .toUriString();
+    }
+
+    public ObjectNode deploymentBody(String environment, String ref, Map<String, String> payload) {
+        ObjectNode json = mapper.createObjectNode();
+
+        var payloadNode = mapper.createObjectNode();
+        payload.forEach(payloadNode::put);
+
+        json.put("ref", ref);
+        json.put("environment", environment);
+        json.put("auto_merge", false);
+        json.set("required_contexts", mapper.createArrayNode());
+        json.set("payload", payloadNode);
+        json.put("description", "Deployment triggered via Flux");
+        json.put("transient_environment", false);
+        json.put("production_environment", false);
+        return json;
+    }
+
+    public ObjectNode statusBody(String environment, KubeObjectStatus status, String envUrl) {
+        // GH State:
+        // error, failure, inactive, in_progress, queued, pending, or success
+        String state =
+                switch (status) {
+                    case IN_PROGRESS -> "in_progress";
+                    case CURRENT -> "success";
+                    case FAILED -> "failure";
+                    case TERMINATING -> "inactive";
+                    case UNKNOWN -> "pending";
+                };
+
+        ObjectNode json = mapper.createObjectNode();
+        json.put("state", state);
+        json.put("description", "Deployment via flux");
+        json.put("environment", environment);
+
+        if (status != KubeObjectStatus.IN_PROGRESS && status != KubeObjectStatus.UNKNOWN) {
+            json.put("auto_inactive", true);
+            if (Strings.isNotBlank(envUrl)) {
+                json.put("environment_url", envUrl);
+            }
+        }
+        return json;
+    }
+}
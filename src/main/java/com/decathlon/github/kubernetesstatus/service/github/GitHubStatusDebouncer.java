@@ -0,0 +1,173 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Hold the non-final statuses of a GitHub deployment for a short window and only post the last one.
+ * Final statuses (Current, Failed) are posted at once, and replace any status still waiting. If a waiting status is
+ * being posted right now, the final one is posted once it is done, so the final one is always the last.
+ * <p>
+ * A held status is accepted at once: its caller moves on, and the debouncer posts it when the window ends, on a pool
+ * bounded by {@code app.github.debounce.concurrency}. A failed post is held again for another window, a few times,
+ * unless a newer status replaced it.
+ */
+@Component
+@Slf4j
+public class GitHubStatusDebouncer {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final class Pending {
+        private Runnable post;
+        private int attempts;
+        private ScheduledFuture<?> future;
+
+        private Pending(Runnable post) {
+            this.post = post;
+        }
+    }
+
+    private final AppProperties.DebounceProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    // Statuses being posted, by key: they cannot be replaced anymore
+    private final Map<String, CompletableFuture<Void>> posting = new ConcurrentHashMap<>();
+
+    public GitHubStatusDebouncer(AppProperties appProperties) {
+        this.properties = appProperties.getGithub().getDebounce();
+        this.scheduler = Executors.newScheduledThreadPool(properties.getConcurrency(), Thread.ofVirtual().name("github-debounce-", 0).factory());
+    }
+
+    /**
+     * @return for a final or not debounced status, completed once it is posted, failed if its post failed, so the
+     * caller does not record a status GitHub never got. Completed at once for a held status, posted later.
+     */
+    public CompletableFuture<Void> submit(String key, KubeObjectStatus status, Runnable post) {
+        if (!properties.isEnabled() || properties.getWindow().isZero()) {
+            return run(post);
+        }
+        if (isFinal(status)) {
+            cancel(key).join();
+            return run(post);
+        }
+        pending.compute(key, (k, current) -> {
+            if (current != null) {
+                current.post = post;
+                current.attempts = 0;
+                return current;
+            }
+            var next = new Pending(post);
+            next.future = scheduler.schedule(() -> flush(k, next), properties.getWindow().toMillis(), TimeUnit.MILLISECONDS);
+            return next;
+        });
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletableFuture<Void> run(Runnable post) {
+        try {
+            post.run();
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Same as {@link #submit(String, KubeObjectStatus, Runnable)} for a reactive post, without blocking the calling
+     * thread. A final or not debounced status is posted by the returned Mono, a held one is posted later by the
+     * debouncer and the Mono completes at once.
+     */
+    public Mono<Void> submitAsync(String key, KubeObjectStatus status, Supplier<Mono<Void>> post) {
+        if (!properties.isEnabled() || properties.getWindow().isZero()) {
+            return Mono.defer(post);
+        }
+        if (isFinal(status)) {
+            return Mono.defer(() -> Mono.fromFuture(cancel(key))).then(Mono.defer(post));
+        }
+        return Mono.fromRunnable(() -> submit(key, status, () -> post.get().block()));
+    }
+
+    private static boolean isFinal(KubeObjectStatus status) {
+        return status == KubeObjectStatus.CURRENT || status == KubeObjectStatus.FAILED;
+    }
+
+    /**
+     * Drop the status waiting for this key, and keep the one being posted from being held again if it fails.
+     *
+     * @return completed when the status of this key being posted right now, if any, is done.
+     */
+    private CompletableFuture<Void> cancel(String key) {
+        var inFlight = new AtomicReference<CompletableFuture<Void>>();
+        pending.compute(key, (k, current) -> {
+            if (current != null) {
+                current.future.cancel(false);
+            }
+            inFlight.set(posting.remove(k));
+            return null;
+        });
+        return inFlight.get() != null ? inFlight.get() : CompletableFuture.completedFuture(null);
+    }
+
+    private void flush(String key, Pending waiting) {
+        var done = new CompletableFuture<Void>();
+        var taken = new AtomicReference<Pending>();
+        // Atomic with cancel: a final status either drops this one or waits for it
+        pending.computeIfPresent(key, (k, current) -> {
+            if (current != waiting) {
+                return current;
+            }
+            taken.set(current);
+            posting.put(k, done);
+            return null;
+        });
+        if (taken.get() == null) {
+            return;
+        }
+        try {
+            waiting.post.run();
+        } catch (RuntimeException e) {
+            log.warn("Cannot post the status of GitHub deployment {}: {}", key, e.getMessage());
+            retry(key, waiting, done);
+        } finally {
+            posting.remove(key, done);
+            done.complete(null);
+        }
+    }
+
+    /**
+     * Hold a status whose post failed for another window, unless a newer or a final status came meanwhile.
+     */
+    private void retry(String key, Pending failed, CompletableFuture<Void> done) {
+        if (++failed.attempts >= MAX_ATTEMPTS || scheduler.isShutdown()) {
+            log.error("Status of GitHub deployment {} not posted after {} attempts", key, failed.attempts);
+            return;
+        }
+        pending.compute(key, (k, current) -> {
+            if (current != null || posting.get(k) != done) {
+                return current;
+            }
+            failed.future = scheduler.schedule(() -> flush(k, failed), properties.getWindow().toMillis(), TimeUnit.MILLISECONDS);
+            return failed;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        pending.forEach(this::flush);
+    }
+}
@@ -2,9 +2,14 @@ package com.decathlon.github.kubernetesstatus.service.github;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.decathlon.github.kubernetesstatus.data.properties.AppMode;
 import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
 import com.decathlon.github.kubernetesstatus.exception.TechnicalException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.logging.log4j.util.Strings;
@@ -18,54 +23,193 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
-import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.URI;
 import java.security.interfaces.RSAPrivateKey;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
+/**
+ * GitHub token: the PAT if configured, else an installation token of a GitHub app, one per app and organization.
+ * <p>
+ * The app of a request is chosen by {@link GitHubAppPool} from its repository. The installation tokens are renewed by
+ * a background thread before they expire, the current one being served meanwhile. A request only fetches a token
+ * itself when there is no valid one (first call, or renewals failing until expiry).
+ * <p>
+ * An app that is not installed in an organization is not asked again for a while, the next app being used directly.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GitHubTokenService {
-    private static final Object LOCK=new Object();
+    private static final Duration NOT_INSTALLED_TTL=Duration.ofMinutes(10);
 
     private final AppProperties appProperties;
     private final RestTemplate restTemplate;
+    private final GitHubAppPool pool;
 
     private record TokenWrapper(Instant expire, String token){}
-    private TokenWrapper token=new TokenWrapper(Instant.MIN, "");
 
+    /**
+     * Installation of an app in an organization, each one has its own token.
+     */
+    private static final class Installation {
+        private final GitHubAppPool.Member member;
+        private final String org;
+        private volatile TokenWrapper token=new TokenWrapper(Instant.MIN, "");
+        private volatile String url;
+
+        private Installation(GitHubAppPool.Member member, String org) {
+            this.member = member;
+            this.org = org;
+        }
+    }
+
+    private final Map<String, Installation> installations=new ConcurrentHashMap<>();
+    private final Map<GitHubAppPool.Member, RSAPrivateKey> privateKeys=new ConcurrentHashMap<>();
+    // Keys of the installations GitHub answered 404 for
+    private final Cache<String, Instant> notInstalled=Caffeine.newBuilder().expireAfterWrite(NOT_INSTALLED_TTL).build();
+    private ScheduledExecutorService refresher;
+
+    /**
+     * @return a token for the default organization.
+     */
     public String createToken() {
+        return createToken(appProperties.getGithub().orgList().get(0));
+    }
+
+    /**
+     * @return a token for the repository or organization targeted by this GitHub API url.
+     */
+    public String createToken(URI uri) {
+        var segments=pathSegments(uri);
+        if (segments.length > 2 && ("repos".equals(segments[1]) || "orgs".equals(segments[1]))) {
+            var key=segments.length > 3 && "repos".equals(segments[1]) ? segments[2] + "/" + segments[3] : segments[2];
+            return createToken(segments[2], key);
+        }
+        return createToken();
+    }
+
+    public String createToken(String org) {
+        return createToken(org, org);
+    }
+
+    private String createToken(String org, String key) {
         var githubProperties=appProperties.getGithub();
         if (Strings.isNotBlank(githubProperties.getToken())){
             return githubProperties.getToken();
         }
-        if (Instant.now().isBefore(token.expire())){
-            return token.token();
+        RuntimeException failure=null;
+        for (var member : pool.candidates(key.toLowerCase(Locale.ROOT))) {
+            if (member.getApp() == null) {
+                throw new TechnicalException("No GitHub token nor app configured.");
+            }
+            if (notInstalled.getIfPresent(key(member, org)) != null) {
+                continue;
+            }
+            try {
+                return token(installation(member, org));
+            } catch (RuntimeException e) {
+                // This app may not be installed in the organization: try the next one
+                log.warn("Cannot get a token of GitHub {} for {}: {}", member.getName(), org, e.getMessage());
+                failure=e;
+            }
+        }
+        throw failure != null ? failure : new TechnicalException("No GitHub app is installed in " + org + ".");
+    }
+
+    private static String key(GitHubAppPool.Member member, String org) {
+        return member.getName() + "|" + org.toLowerCase(Locale.ROOT);
+    }
+
+    private Installation installation(GitHubAppPool.Member member, String org) {
+        return installations.computeIfAbsent(key(member, org), k -> new Installation(member, org));
+    }
+
+    private String token(Installation installation) {
+        var current=installation.token;
+        if (Instant.now().isBefore(current.expire())){
+            return current.token();
         }
-        synchronized(LOCK) {
-            if (Instant.now().isBefore(token.expire())){
-                return token.token();
+        synchronized(installation) {
+            current=installation.token;
+            if (Instant.now().isBefore(current.expire())){
+                return current.token();
             }
+            return refreshToken(installation).token();
+        }
+    }
 
-            var date = new Date();
-            var jwt = generateJWT(date);
+    /**
+     * @return the path segments of the url after the GitHub API path, the first one being empty.
+     */
+    private String[] pathSegments(URI uri) {
+        var apiPath=URI.create(appProperties.getGithub().getGithubApi()).getPath();
+        var path=uri.getPath();
+        if (path == null || !path.startsWith(apiPath)) {
+            return new String[0];
+        }
+        return path.substring(apiPath.length()).split("/");
+    }
 
-            var installationUrl = getInstallationUrl(jwt);
+    private TokenWrapper refreshToken(Installation installation) {
+        var jwt = generateJWT(installation.member, new Date());
+        if (installation.url == null) {
+            try {
+                installation.url = getInstallationUrl(jwt, installation.org);
+            } catch (HttpClientErrorException.NotFound e) {
+                notInstalled.put(key(installation.member, installation.org), Instant.now());
+                throw e;
+            }
+            notInstalled.invalidate(key(installation.member, installation.org));
+        }
+        var previous = installation.token;
+        try {
+            installation.token = this.callForToken(jwt, installation.url);
+        } catch (RuntimeException e) {
+            // The installation may have changed
+            installation.url = null;
+            throw e;
+        }
+        pool.bind(installation.token.token(), installation.member, previous.token());
+        return installation.token;
+    }
 
-            var newToken=this.callForToken(jwt, installationUrl);
-            token=newToken;
-            return newToken.token();
+    private void scheduledRefresh(Installation installation) {
+        var retryDelay = installation.member.getApp().getRetryDelay();
+        Duration next;
+        try {
+            synchronized (installation) {
+                refreshToken(installation);
+            }
+            next = Duration.between(Instant.now(), installation.token.expire().minus(installation.member.getApp().getRefreshAhead()));
+        } catch (HttpClientErrorException.NotFound e) {
+            // Not installed in this organization: nothing to renew until it may have been installed
+            log.debug("GitHub {} is not installed in {}, checking again in {}", installation.member.getName(), installation.org, NOT_INSTALLED_TTL);
+            next = NOT_INSTALLED_TTL;
+        } catch (RuntimeException e) {
+            log.warn("Cannot renew GitHub {} token of {}, retrying in {}: {}", installation.member.getName(), installation.org, retryDelay, e.getMessage());
+            next = retryDelay;
         }
+        if (next.compareTo(retryDelay) < 0) {
+            next = retryDelay;
+        }
+        refresher.schedule(() -> scheduledRefresh(installation), next.toMillis(), TimeUnit.MILLISECONDS);
     }
 
     private TokenWrapper callForToken(String jwt, String installationUrl) {
@@ -89,17 +233,17 @@ public class GitHubTokenService {
         return new TokenWrapper(Instant.from(ldt).minus(5, ChronoUnit.MINUTES), it.get("token").textValue());
     }
 
-    private String getInstallationUrl(String jwt){
+    private String getInstallationUrl(String jwt, String org){
         var githubProperties=appProperties.getGithub();
         HttpHeaders headers = new HttpHeaders();
         headers.set("Accept","application/vnd.github.machine-man-preview+json");
         headers.setBearerAuth(jwt);
 
-        var installation=restTemplate.exchange(githubProperties.getGithubApi()+"/orgs/"+githubProperties.getOrgs()+"/installation",
+        var installation=restTemplate.exchange(githubProperties.getGithubApi()+"/orgs/"+org+"/installation",
                 HttpMethod.GET, new HttpEntity<Void>(headers), JsonNode.class);
 
         if (!installation.getStatusCode().is2xxSuccessful()){
-            throw new TechnicalException("Cannot get installation url: "+ installation);
+            throw new TechnicalException("Cannot get installation url of "+org+": "+ installation);
         }
 
         var it=installation.getBody();
@@ -107,9 +251,12 @@ public class GitHubTokenService {
         return it.get("access_tokens_url").textValue();
     }
 
-    private RSAPrivateKey getPrivateKey() {
-        var githubProperties=appProperties.getGithub();
-        String secretKey=githubProperties.getApp().getPrivateKey();
+    private RSAPrivateKey getPrivateKey(GitHubAppPool.Member member) {
+        return privateKeys.computeIfAbsent(member, this::parsePrivateKey);
+    }
+
+    private RSAPrivateKey parsePrivateKey(GitHubAppPool.Member member) {
+        String secretKey=member.getApp().getPrivateKey();
 
         var pemParser = new PEMParser(new StringReader(secretKey));
         try {
@@ -134,13 +281,12 @@ public class GitHubTokenService {
         throw new IllegalArgumentException("GitHub Private key is not PKCS#1 nor PKCS#8");
     }
 
-    private String generateJWT(Date date){
-        var githubProperties=appProperties.getGithub();
+    private String generateJWT(GitHubAppPool.Member member, Date date){
         var exp=new Date(date.getTime()+10*60*1000); // 10 minutes
 
-        var algorithm = Algorithm.RSA256(null, getPrivateKey());
+        var algorithm = Algorithm.RSA256(null, getPrivateKey(member));
         return JWT.create()
-                .withIssuer(Long.toString(githubProperties.getApp().getId()))
+                .withIssuer(Long.toString(member.getApp().getId()))
                 .withIssuedAt(date)
                 .withExpiresAt(exp)
                 .sign(algorithm);
@@ -154,14 +300,33 @@ public class GitHubTokenService {
         ClientHttpRequestInterceptor interceptor=(request, body, execution)->{
             if ( ghHost.equals(request.getURI().getHost()) &&
                     !request.getHeaders().containsKey("Authorization")) {
-                request.getHeaders().set("Authorization","token "+this.createToken());
+                request.getHeaders().set("Authorization","token "+this.createToken(request.getURI()));
             }
             return execution.execute(request, body);
         };
 
+        // First, so the rate limiter knows the app of the request
         var lst=new ArrayList<>(restTemplate.getInterceptors());
-        lst.add(interceptor);
+        lst.add(0, interceptor);
 
         restTemplate.setInterceptors(lst);
+
+        var apps=pool.members().stream().filter(member -> member.getApp() != null).toList();
+        if (appProperties.getMode() != AppMode.CAPTURE_AND_TRANSFER && !apps.isEmpty()) {
+            refresher = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("github-token").factory());
+            for (var member : apps) {
+                for (var org : appProperties.getGithub().orgList()) {
+                    var installation=installation(member, org);
+                    refresher.execute(() -> scheduledRefresh(installation));
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,102 @@
+package com.decathlon.github.kubernetesstatus.service.github;
+
+import org.springframework.http.HttpHeaders;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * GitHub request budget, as told by the rate limit headers of the last responses.
+ * <p>
+ * While the budget is above the reserve, requests are sent right away. Under the reserve, only priority requests are
+ * sent, spread until the budget reset. After a Retry-After or an exhausted budget, nothing is sent until it is over.
+ */
+public class RateLimitBudget {
+    static final String REMAINING = "X-RateLimit-Remaining";
+    static final String LIMIT = "X-RateLimit-Limit";
+    static final String RESET = "X-RateLimit-Reset";
+    static final String RETRY_AFTER = "Retry-After";
+
+    private final long reserve;
+    private final Clock clock;
+
+    private long remaining = -1;
+    private long limit = -1;
+    private Instant resetAt = Instant.EPOCH;
+    private Instant blockedUntil = Instant.EPOCH;
+
+    public RateLimitBudget(long reserve, Clock clock) {
+        this.reserve = reserve;
+        this.clock = clock;
+    }
+
+    /**
+     * @return how long to wait before sending a request.
+     */
+    public synchronized Duration delay(boolean priority) {
+        var now = clock.instant();
+        if (now.isBefore(blockedUntil)) {
+            return Duration.between(now, blockedUntil);
+        }
+        if (remaining < 0 || !now.isBefore(resetAt) || remaining > reserve) {
+            return Duration.ZERO;
+        }
+        if (!priority) {
+            // Keep what is left for the priority requests
+            return Duration.between(now, resetAt);
+        }
+        return Duration.between(now, resetAt).dividedBy(Math.max(remaining, 1));
+    }
+
+    /**
+     * Count a request about to be sent, until its response gives the real budget.
+     */
+    public synchronized void consume() {
+        if (remaining > 0) {
+            remaining--;
+        }
+    }
+
+    public synchronized void update(HttpHeaders headers, int statusCode) {
+        var now = clock.instant();
+        var remainingHeader = parse(headers.getFirst(REMAINING));
+        var limitHeader = parse(headers.getFirst(LIMIT));
+        var resetHeader = parse(headers.getFirst(RESET));
+        var retryAfter = parse(headers.getFirst(RETRY_AFTER));
+
+        if (remainingHeader >= 0) {
+            remaining = remainingHeader;
+        }
+        if (limitHeader >= 0) {
+            limit = limitHeader;
+        }
+        if (resetHeader >= 0) {
+            resetAt = Instant.ofEpochSecond(resetHeader);
+        }
+        if (retryAfter >= 0) {
+            blockedUntil = now.plusSeconds(retryAfter);
+        } else if ((statusCode == 403 || statusCode == 429) && remaining == 0 && resetAt.isAfter(now)) {
+            blockedUntil = resetAt;
+        }
+    }
+
+    public synchronized long remaining() {
+        return remaining;
+    }
+
+    public synchronized long limit() {
+        return limit;
+    }
+
+    private static long parse(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
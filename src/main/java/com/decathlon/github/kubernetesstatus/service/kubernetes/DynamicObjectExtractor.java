@@ -1,30 +1,55 @@
 package com.decathlon.github.kubernetesstatus.service.kubernetes;
 
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
-import io.kubernetes.client.openapi.ApiClient;
-import io.kubernetes.client.util.generic.dynamic.DynamicKubernetesApi;
 import io.kubernetes.client.util.generic.dynamic.DynamicKubernetesObject;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
 @AllArgsConstructor
 @Slf4j
 public class DynamicObjectExtractor {
-    private ApiClient apiClient;
+    private KubernetesApiRegistry apiRegistry;
+    private InformerCache informerCache;
+    private SourceFetchPlanner sourceFetchPlanner;
+    private final Map<String, Optional<DynamicKubernetesObject>> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * Fetch in batch the source objects of the coming captures. Each prefetched object is served once.
+     */
+    public void prefetch(Collection<GitHubDeploymentSpec.NamespacedObject> sourceRefs, int minGroupSize) {
+        prefetched.putAll(sourceFetchPlanner.fetch(sourceRefs, minGroupSize));
+    }
+
+    public void clearPrefetch() {
+        prefetched.clear();
+    }
 
-    private record GroupAndVersion(String group, String version) { }
     public DynamicKubernetesObject extractKubeObject(GitHubDeploymentSpec.NamespacedObject sourceRef) {
-        var grpAndVersion=splitApiVersion(sourceRef.getApiVersion());
-        String resourceName=sourceRef.getKind();
+        // When the kind is watched, the informer cache is the source of truth: no need to call the API server.
+        if (informerCache.hasSynced(sourceRef)) {
+            var cached = informerCache.getSource(sourceRef);
+            if (cached == null) {
+                log.warn("k8s object {} in {}/{} not found in cache", sourceRef.getKind(), sourceRef.getNamespace(), sourceRef.getName());
+            }
+            return cached;
+        }
 
-        if (!resourceName.endsWith("s")) {
-            log.debug("SourceRef kind is not plural, adding 's' to it: {}s", resourceName);
-            resourceName=resourceName+"s";
+        var fetched = prefetched.remove(SourceFetchPlanner.key(sourceRef));
+        if (fetched != null) {
+            if (fetched.isEmpty()) {
+                log.warn("k8s object {} in {}/{} not found", sourceRef.getKind(), sourceRef.getNamespace(), sourceRef.getName());
+            }
+            return fetched.orElse(null);
         }
 
-        DynamicKubernetesApi dynamicApi = new DynamicKubernetesApi(grpAndVersion.group(), grpAndVersion.version(), resourceName.toLowerCase(), apiClient);
+        var dynamicApi = apiRegistry.dynamicApi(sourceRef.getApiVersion(), sourceRef.getKind());
 
         var ns=sourceRef.getNamespace().isBlank() ? "default" : sourceRef.getNamespace();
 
@@ -37,15 +62,4 @@ public class DynamicObjectExtractor {
 
         return k8sresult.getObject();
     }
-
-    private GroupAndVersion splitApiVersion(String apiVersion) {
-        if (apiVersion.isBlank()) {
-            return new GroupAndVersion("", "v1");
-        }
-        var apiGrpAndVersion=apiVersion.split("/");
-        if (apiGrpAndVersion.length==1){
-            return new GroupAndVersion("", apiGrpAndVersion[0]);
-        }
-        return new GroupAndVersion(apiGrpAndVersion[0], apiGrpAndVersion[1]);
-    }
 }
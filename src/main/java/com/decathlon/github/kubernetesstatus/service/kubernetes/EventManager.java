@@ -9,7 +9,6 @@ import io.kubernetes.client.extended.event.EventType;
 import io.kubernetes.client.extended.event.legacy.EventRecorder;
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
-import io.kubernetes.client.openapi.apis.CustomObjectsApi;
 import io.kubernetes.client.util.PatchUtils;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,11 +20,12 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class EventManager {
     private ApiClient apiClient;
+    private KubernetesApiRegistry apiRegistry;
     private EventRecorder eventRecorder;
 
     public void addEvent(GitHubDeployment deployment, KubeObjectResult status, GitHubDeploymentSpec.NamespacedObject sourceRef, GitHubDeployment patch) {
         try {
-            Call fn = new CustomObjectsApi(apiClient).patchNamespacedCustomObjectStatus(
+            Call fn = apiRegistry.customObjectsApi().patchNamespacedCustomObjectStatus(
                     GithubDeploymentRef.GROUP,
                     GithubDeploymentRef.CURRENT_VERSION,
                     deployment.getMetadata().getNamespace(),
@@ -1,30 +1,119 @@
 package com.decathlon.github.kubernetesstatus.service.kubernetes;
 
-import com.decathlon.github.kubernetesstatus.model.GithubDeploymentRef;
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
-import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentList;
-import io.kubernetes.client.openapi.ApiClient;
-import io.kubernetes.client.util.generic.GenericKubernetesApi;
-import lombok.AllArgsConstructor;
+import com.decathlon.github.kubernetesstatus.service.CaptureMemo;
+import com.decathlon.github.kubernetesstatus.service.extract.ExtractRuleCache;
+import io.kubernetes.client.informer.cache.Caches;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.util.Watch;
+import io.kubernetes.client.util.generic.options.ListOptions;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
+/**
+ * GHD listing for the polling mode.
+ * <p>
+ * The first listing is done by pages (limit/continue), then the last resourceVersion is kept and following cycles only
+ * read the changes with a short watch. If this resourceVersion is too old (410 Gone), everything is listed again.
+ */
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 @Slf4j
 public class GHDService {
-    private ApiClient apiClient;
+    private static final int GONE = 410;
+
+    private final KubernetesApiRegistry apiRegistry;
+    private final AppProperties appProperties;
+    private final ExtractRuleCache extractRuleCache;
+    private final CaptureMemo captureMemo;
+
+    private final Map<String, GitHubDeployment> known = new LinkedHashMap<>();
+    private String resourceVersion;
 
     public List<GitHubDeployment> listDeployment(){
-        var kubeApi=new GenericKubernetesApi<>(GitHubDeployment.class, GitHubDeploymentList.class, GithubDeploymentRef.GROUP, GithubDeploymentRef.CURRENT_VERSION, GithubDeploymentRef.PLURAL, apiClient);
-        var list=kubeApi.list();
-        if (list.isSuccess()){
-            return list.getObject().getItems();
+        var all = new ArrayList<GitHubDeployment>();
+        forEachPage(all::addAll);
+        return all;
+    }
+
+    public synchronized void forEachPage(Consumer<List<GitHubDeployment>> consumer) {
+        if (resourceVersion != null) {
+            try {
+                watchChanges();
+                consumer.accept(List.copyOf(known.values()));
+                return;
+            } catch (ApiException | IOException | RuntimeException e) {
+                log.info("Cannot resume GHD watch from resource version {}, listing again: {}", resourceVersion, e.getMessage());
+                resourceVersion = null;
+            }
+        }
+        listByPage(consumer);
+    }
+
+    private void listByPage(Consumer<List<GitHubDeployment>> consumer) {
+        known.clear();
+        String continueToken = null;
+        do {
+            var options = new ListOptions();
+            options.setLimit(appProperties.getKubernetes().getPageSize());
+            options.setContinue(continueToken);
+
+            var list = apiRegistry.ghdApi().list(options);
+            if (!list.isSuccess()) {
+                log.error("Error listing GHD: {} -- {}", list.getHttpStatusCode(), list.getStatus());
+                resourceVersion = null;
+                return;
+            }
+            var page = list.getObject();
+            page.getItems().forEach(deployment -> known.put(Caches.metaNamespaceKeyFunc(deployment), deployment));
+            consumer.accept(page.getItems());
+            // All pages of a list share the same resource version
+            resourceVersion = page.getMetadata() != null ? page.getMetadata().getResourceVersion() : null;
+            continueToken = page.getMetadata() != null ? page.getMetadata().getContinue() : null;
+        } while (continueToken != null && !continueToken.isEmpty());
+    }
+
+    private void watchChanges() throws ApiException, IOException {
+        var options = new ListOptions();
+        options.setResourceVersion(resourceVersion);
+        options.setTimeoutSeconds((int) Math.max(1, appProperties.getKubernetes().getWatchTimeout().toSeconds()));
+
+        try (var watch = apiRegistry.ghdApi().watch(options)) {
+            for (Watch.Response<GitHubDeployment> event : watch) {
+                applyEvent(event);
+            }
+        }
+    }
+
+    private void applyEvent(Watch.Response<GitHubDeployment> event) {
+        if ("ERROR".equals(event.type)) {
+            var code = event.status != null && event.status.getCode() != null ? event.status.getCode() : 0;
+            throw new IllegalStateException(code == GONE ? "resource version expired" : "watch error " + code);
+        }
+        var deployment = event.object;
+        if (deployment == null || deployment.getMetadata() == null) {
+            return;
+        }
+        switch (event.type) {
+            case "ADDED", "MODIFIED" -> known.put(Caches.metaNamespaceKeyFunc(deployment), deployment);
+            case "DELETED" -> {
+                known.remove(Caches.metaNamespaceKeyFunc(deployment));
+                extractRuleCache.evict(deployment.getMetadata().getUid());
+                captureMemo.evict(deployment.getMetadata().getUid());
+            }
+            default -> {
+                // BOOKMARK: only the resource version moves
+            }
         }
-        log.error("Error listing GHD: {} -- {}", list.getHttpStatusCode(), list.getStatus());
-        return Collections.emptyList();
+        resourceVersion = deployment.getMetadata().getResourceVersion();
     }
 }
@@ -0,0 +1,239 @@
+package com.decathlon.github.kubernetesstatus.service.kubernetes;
+
+import com.decathlon.github.kubernetesstatus.model.GithubDeploymentRef;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentList;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.CaptureMemo;
+import com.decathlon.github.kubernetesstatus.service.extract.ExtractRuleCache;
+import io.kubernetes.client.informer.ResourceEventHandler;
+import io.kubernetes.client.informer.SharedIndexInformer;
+import io.kubernetes.client.informer.SharedInformerFactory;
+import io.kubernetes.client.informer.cache.Caches;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.util.generic.GenericKubernetesApi;
+import io.kubernetes.client.util.generic.dynamic.DynamicKubernetesListObject;
+import io.kubernetes.client.util.generic.dynamic.DynamicKubernetesObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Local cache of GitHubDeployments and of the kubernetes objects they observe, fed by shared informers (list + watch).
+ * <p>
+ * A source informer is lazily registered for each (apiVersion, kind, namespace) referenced by a GHD, so only the
+ * namespaces used by GHDs are listed and kept in memory, and it is stopped once no GHD references it anymore. Every
+ * change on a GHD or on one of its source objects is notified to the listener with the GHD key (namespace/name).
+ */
+@Service
+@Slf4j
+public class InformerCache {
+    private static final String SOURCE_INDEX = "sourceRef";
+    private static final String INFORMER_INDEX = "sourceInformer";
+
+    private final ApiClient apiClient;
+    private final KubernetesApiRegistry apiRegistry;
+    private final ExtractRuleCache extractRuleCache;
+    private final CaptureMemo captureMemo;
+    private final Map<String, SharedIndexInformer<DynamicKubernetesObject>> sourceInformers = new ConcurrentHashMap<>();
+    private final Map<String, SharedInformerFactory> factories = new ConcurrentHashMap<>();
+
+    private SharedIndexInformer<GitHubDeployment> ghdInformer;
+    private Consumer<String> listener = key -> { };
+
+    public InformerCache(@Qualifier("informerApiClient") ApiClient apiClient, KubernetesApiRegistry apiRegistry, ExtractRuleCache extractRuleCache, CaptureMemo captureMemo) {
+        this.apiClient = apiClient;
+        this.apiRegistry = apiRegistry;
+        this.extractRuleCache = extractRuleCache;
+        this.captureMemo = captureMemo;
+    }
+
+    public synchronized void start(Consumer<String> listener) {
+        if (ghdInformer != null) {
+            return;
+        }
+        this.listener = listener;
+
+        var factory = new SharedInformerFactory(apiClient);
+        var kubeApi = new GenericKubernetesApi<>(GitHubDeployment.class, GitHubDeploymentList.class, GithubDeploymentRef.GROUP, GithubDeploymentRef.CURRENT_VERSION, GithubDeploymentRef.PLURAL, apiClient);
+        ghdInformer = factory.sharedIndexInformerFor(kubeApi, GitHubDeployment.class, 0);
+        ghdInformer.addIndexers(Map.of(SOURCE_INDEX, deployment -> {
+            var sourceRef = deployment.getSpec() != null ? deployment.getSpec().getSourceRef() : null;
+            return sourceRef != null ? List.of(sourceKey(sourceRef)) : Collections.emptyList();
+        }, INFORMER_INDEX, deployment -> {
+            var sourceRef = watchedSourceRef(deployment);
+            return sourceRef != null ? List.of(informerKey(sourceRef)) : Collections.emptyList();
+        }));
+        ghdInformer.addEventHandler(new ResourceEventHandler<>() {
+            @Override
+            public void onAdd(GitHubDeployment deployment) {
+                watchSource(deployment);
+                notifyChange(deployment);
+            }
+
+            @Override
+            public void onUpdate(GitHubDeployment oldDeployment, GitHubDeployment newDeployment) {
+                // Our own status patches do not bump the generation, no need to reconcile on them.
+                if (!Objects.equals(oldDeployment.getMetadata().getGeneration(), newDeployment.getMetadata().getGeneration())) {
+                    watchSource(newDeployment);
+                    releaseSource(oldDeployment);
+                    notifyChange(newDeployment);
+                }
+            }
+
+            @Override
+            public void onDelete(GitHubDeployment deployment, boolean deletedFinalStateUnknown) {
+                extractRuleCache.evict(deployment.getMetadata().getUid());
+                captureMemo.evict(deployment.getMetadata().getUid());
+                releaseSource(deployment);
+                notifyChange(deployment);
+            }
+        });
+        factories.put(GithubDeploymentRef.PLURAL, factory);
+        factory.startAllRegisteredInformers();
+        log.info("GitHubDeployment informer started");
+    }
+
+    public synchronized void stop() {
+        factories.values().forEach(SharedInformerFactory::stopAllRegisteredInformers);
+        factories.clear();
+        sourceInformers.clear();
+        ghdInformer = null;
+    }
+
+    public boolean isRunning() {
+        return ghdInformer != null;
+    }
+
+    public GitHubDeployment getDeployment(String key) {
+        return ghdInformer != null ? ghdInformer.getIndexer().getByKey(key) : null;
+    }
+
+    public List<GitHubDeployment> listDeployment() {
+        return ghdInformer != null ? ghdInformer.getIndexer().list() : Collections.emptyList();
+    }
+
+    /**
+     * @return true if the informer watching this kind of source has done its initial listing, so that the cache can
+     * answer for this source object (even if the answer is "not found").
+     */
+    public boolean hasSynced(GitHubDeploymentSpec.NamespacedObject sourceRef) {
+        var informer = sourceInformers.get(informerKey(sourceRef));
+        return informer != null && informer.hasSynced();
+    }
+
+    public DynamicKubernetesObject getSource(GitHubDeploymentSpec.NamespacedObject sourceRef) {
+        var informer = sourceInformers.get(informerKey(sourceRef));
+        if (informer == null) {
+            return null;
+        }
+        return informer.getIndexer().getByKey(namespace(sourceRef.getNamespace()) + "/" + sourceRef.getName());
+    }
+
+    private void watchSource(GitHubDeployment deployment) {
+        var sourceRef = watchedSourceRef(deployment);
+        if (sourceRef == null) {
+            return;
+        }
+        sourceInformers.computeIfAbsent(informerKey(sourceRef),
+                key -> createSourceInformer(key, sourceRef.getApiVersion(), sourceRef.getKind(), namespace(sourceRef.getNamespace())));
+    }
+
+    /**
+     * Stops the informer of the source of this GHD when no other GHD observes this kind in this namespace. The GHD
+     * index is already up-to-date when the handlers are called.
+     */
+    private void releaseSource(GitHubDeployment deployment) {
+        var sourceRef = watchedSourceRef(deployment);
+        var informer = ghdInformer;
+        if (sourceRef == null || informer == null) {
+            return;
+        }
+        var key = informerKey(sourceRef);
+        if (!informer.getIndexer().byIndex(INFORMER_INDEX, key).isEmpty()) {
+            return;
+        }
+        sourceInformers.remove(key);
+        var factory = factories.remove(key);
+        if (factory != null) {
+            log.info("Stopping informer for {} in {}: no GitHubDeployment uses it anymore", sourceRef.getKind(), namespace(sourceRef.getNamespace()));
+            factory.stopAllRegisteredInformers();
+        }
+    }
+
+    private SharedIndexInformer<DynamicKubernetesObject> createSourceInformer(String key, String apiVersion, String kind, String namespace) {
+        var resource = apiRegistry.resourceOf(apiVersion, kind);
+        log.info("Starting informer for {} ({}) in {}", kind, resource, namespace);
+
+        // The factory keeps one informer per java type, and all sources are DynamicKubernetesObject: one factory per kind and namespace.
+        var factory = new SharedInformerFactory(apiClient);
+        var kubeApi = new GenericKubernetesApi<>(DynamicKubernetesObject.class, DynamicKubernetesListObject.class, resource.group(), resource.version(), resource.plural(), apiClient);
+        var informer = factory.sharedIndexInformerFor(kubeApi, DynamicKubernetesObject.class, 0, namespace);
+        informer.addEventHandler(new ResourceEventHandler<>() {
+            @Override
+            public void onAdd(DynamicKubernetesObject obj) {
+                notifySourceChange(apiVersion, kind, obj);
+            }
+
+            @Override
+            public void onUpdate(DynamicKubernetesObject oldObj, DynamicKubernetesObject newObj) {
+                if (!Objects.equals(oldObj.getMetadata().getResourceVersion(), newObj.getMetadata().getResourceVersion())) {
+                    notifySourceChange(apiVersion, kind, newObj);
+                }
+            }
+
+            @Override
+            public void onDelete(DynamicKubernetesObject obj, boolean deletedFinalStateUnknown) {
+                notifySourceChange(apiVersion, kind, obj);
+            }
+        });
+        factories.put(key, factory);
+        factory.startAllRegisteredInformers();
+        return informer;
+    }
+
+    private void notifySourceChange(String apiVersion, String kind, DynamicKubernetesObject obj) {
+        if (ghdInformer == null) {
+            return;
+        }
+        var key = sourceKey(apiVersion, kind, obj.getMetadata().getNamespace(), obj.getMetadata().getName());
+        ghdInformer.getIndexer().byIndex(SOURCE_INDEX, key).forEach(this::notifyChange);
+    }
+
+    private void notifyChange(GitHubDeployment deployment) {
+        listener.accept(Caches.metaNamespaceKeyFunc(deployment));
+    }
+
+    private static GitHubDeploymentSpec.NamespacedObject watchedSourceRef(GitHubDeployment deployment) {
+        var sourceRef = deployment.getSpec() != null ? deployment.getSpec().getSourceRef() : null;
+        return sourceRef != null && sourceRef.getKind() != null ? sourceRef : null;
+    }
+
+    private static String informerKey(GitHubDeploymentSpec.NamespacedObject sourceRef) {
+        return kindKey(sourceRef.getApiVersion(), sourceRef.getKind()) + "|" + namespace(sourceRef.getNamespace());
+    }
+
+    private static String sourceKey(GitHubDeploymentSpec.NamespacedObject sourceRef) {
+        return sourceKey(sourceRef.getApiVersion(), sourceRef.getKind(), sourceRef.getNamespace(), sourceRef.getName());
+    }
+
+    private static String sourceKey(String apiVersion, String kind, String namespace, String name) {
+        return kindKey(apiVersion, kind) + "|" + namespace(namespace) + "/" + name;
+    }
+
+    private static String kindKey(String apiVersion, String kind) {
+        var version = apiVersion == null || apiVersion.isBlank() ? "v1" : apiVersion;
+        return version + "|" + kind;
+    }
+
+    private static String namespace(String namespace) {
+        return namespace == null || namespace.isBlank() ? "default" : namespace;
+    }
+}
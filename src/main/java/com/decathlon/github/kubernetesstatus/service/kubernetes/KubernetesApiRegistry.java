@@ -0,0 +1,123 @@
+package com.decathlon.github.kubernetesstatus.service.kubernetes;
+
+import com.decathlon.github.kubernetesstatus.model.GithubDeploymentRef;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentList;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.apis.CustomObjectsApi;
+import io.kubernetes.client.openapi.models.V1APIResource;
+import io.kubernetes.client.openapi.models.V1APIResourceList;
+import io.kubernetes.client.util.generic.GenericKubernetesApi;
+import io.kubernetes.client.util.generic.dynamic.DynamicKubernetesListObject;
+import io.kubernetes.client.util.generic.dynamic.DynamicKubernetesObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Kubernetes API clients, created lazily once per resource and reused.
+ * Resource plural names are resolved from the API discovery instead of being guessed from the kind.
+ */
+@Service
+@Slf4j
+public class KubernetesApiRegistry {
+    public record Resource(String group, String version, String plural) { }
+
+    private final ApiClient apiClient;
+    private final CustomObjectsApi customObjectsApi;
+    private final GenericKubernetesApi<GitHubDeployment, GitHubDeploymentList> ghdApi;
+
+    // apiVersion -> (kind -> plural)
+    private final Map<String, Map<String, String>> plurals = new ConcurrentHashMap<>();
+    // apiVersion|kind -> resource
+    private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+    private final Map<Resource, GenericKubernetesApi<DynamicKubernetesObject, DynamicKubernetesListObject>> dynamicApis = new ConcurrentHashMap<>();
+
+    public KubernetesApiRegistry(ApiClient apiClient) {
+        this.apiClient = apiClient;
+        this.customObjectsApi = new CustomObjectsApi(apiClient);
+        this.ghdApi = new GenericKubernetesApi<>(GitHubDeployment.class, GitHubDeploymentList.class, GithubDeploymentRef.GROUP, GithubDeploymentRef.CURRENT_VERSION, GithubDeploymentRef.PLURAL, customObjectsApi);
+    }
+
+    public GenericKubernetesApi<GitHubDeployment, GitHubDeploymentList> ghdApi() {
+        return ghdApi;
+    }
+
+    public CustomObjectsApi customObjectsApi() {
+        return customObjectsApi;
+    }
+
+    public GenericKubernetesApi<DynamicKubernetesObject, DynamicKubernetesListObject> dynamicApi(String apiVersion, String kind) {
+        return dynamicApis.computeIfAbsent(resourceOf(apiVersion, kind),
+                r -> new GenericKubernetesApi<>(DynamicKubernetesObject.class, DynamicKubernetesListObject.class, r.group(), r.version(), r.plural(), customObjectsApi));
+    }
+
+    public Resource resourceOf(String apiVersion, String kind) {
+        var normalized = apiVersion == null || apiVersion.isBlank() ? "v1" : apiVersion;
+        var key = normalized + "|" + kind;
+        var resource = resources.get(key);
+        if (resource != null) {
+            return resource;
+        }
+
+        var slash = normalized.indexOf('/');
+        var group = slash < 0 ? "" : normalized.substring(0, slash);
+        var version = slash < 0 ? normalized : normalized.substring(slash + 1);
+        var plural = pluralOf(normalized, group, version, kind);
+        if (plural == null) {
+            // Not cached, so the discovery is tried again next time.
+            plural = guessPlural(kind);
+            log.warn("Kind {} not found in {} API discovery, using {}", kind, normalized, plural);
+            return new Resource(group, version, plural);
+        }
+        resource = new Resource(group, version, plural);
+        resources.put(key, resource);
+        return resource;
+    }
+
+    private String pluralOf(String apiVersion, String group, String version, String kind) {
+        var kinds = plurals.computeIfAbsent(apiVersion, k -> discover(group, version));
+        if (kinds == null) {
+            return null;
+        }
+        var lower = kind.toLowerCase(Locale.ROOT);
+        if (kinds.containsKey(lower)) {
+            return kinds.get(lower);
+        }
+        // The kind may already be the plural name
+        return kinds.containsValue(lower) ? lower : null;
+    }
+
+    private Map<String, String> discover(String group, String version) {
+        try {
+            V1APIResourceList list = group.isEmpty()
+                    ? new CoreV1Api(apiClient).getAPIResources().execute()
+                    : customObjectsApi.getAPIResources(group, version).execute();
+            return list.getResources().stream()
+                    // skip sub-resources like deployments/status
+                    .filter(r -> !r.getName().contains("/"))
+                    .collect(Collectors.toMap(r -> r.getKind().toLowerCase(Locale.ROOT), V1APIResource::getName, (a, b) -> a));
+        } catch (ApiException e) {
+            log.warn("Cannot discover resources of {}/{}: {} {}", group, version, e.getCode(), e.getMessage());
+            return null;
+        }
+    }
+
+    static String guessPlural(String kind) {
+        var lower = kind.toLowerCase(Locale.ROOT);
+        if (lower.endsWith("s")) {
+            // Already given as a plural (deployments), as accepted before the discovery
+            return lower;
+        }
+        if (lower.endsWith("y")) {
+            return lower.substring(0, lower.length() - 1) + "ies";
+        }
+        return lower + "s";
+    }
+}
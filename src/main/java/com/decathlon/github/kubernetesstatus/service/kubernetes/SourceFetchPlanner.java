@@ -0,0 +1,74 @@
+package com.decathlon.github.kubernetesstatus.service.kubernetes;
+
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import io.kubernetes.client.util.generic.dynamic.DynamicKubernetesObject;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Group the source objects needed by a cycle by (apiVersion, kind, namespace) and fetch each group with a single list
+ * call, instead of one GET per GHD.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SourceFetchPlanner {
+    private final KubernetesApiRegistry apiRegistry;
+
+    private record Group(String apiVersion, String kind, String namespace) { }
+
+    /**
+     * @param minGroupSize groups smaller than this are not fetched: a single GET is cheaper than a list.
+     * @return the fetched objects by {@link #key(GitHubDeploymentSpec.NamespacedObject)}, an empty value meaning the
+     * object does not exist. Objects of a group that could not be listed are absent.
+     */
+    public Map<String, Optional<DynamicKubernetesObject>> fetch(Collection<GitHubDeploymentSpec.NamespacedObject> sourceRefs, int minGroupSize) {
+        Map<Group, Set<String>> groups = new HashMap<>();
+        sourceRefs.forEach(ref -> groups
+                .computeIfAbsent(new Group(apiVersion(ref.getApiVersion()), ref.getKind(), namespace(ref.getNamespace())), g -> new HashSet<>())
+                .add(ref.getName()));
+
+        Map<String, Optional<DynamicKubernetesObject>> result = new HashMap<>();
+        groups.forEach((group, names) -> {
+            if (minGroupSize <= 0 || names.size() < minGroupSize) {
+                return;
+            }
+            var list = apiRegistry.dynamicApi(group.apiVersion(), group.kind()).list(group.namespace());
+            if (!list.isSuccess()) {
+                log.warn("Failed to list k8s objects {} in {}: {}", group.kind(), group.namespace(), list.getStatus() != null ? list.getStatus().getMessage() : list.getHttpStatusCode());
+                return;
+            }
+            var byName = list.getObject().getItems().stream()
+                    .collect(Collectors.toMap(o -> o.getMetadata().getName(), Function.identity(), (a, b) -> a));
+            names.forEach(name -> result.put(key(group.apiVersion(), group.kind(), group.namespace(), name), Optional.ofNullable(byName.get(name))));
+            log.debug("Fetched {} {} in {} with one list", names.size(), group.kind(), group.namespace());
+        });
+        return result;
+    }
+
+    public static String key(GitHubDeploymentSpec.NamespacedObject sourceRef) {
+        return key(apiVersion(sourceRef.getApiVersion()), sourceRef.getKind(), namespace(sourceRef.getNamespace()), sourceRef.getName());
+    }
+
+    private static String key(String apiVersion, String kind, String namespace, String name) {
+        return apiVersion + "|" + kind + "|" + namespace + "/" + name;
+    }
+
+    private static String apiVersion(String apiVersion) {
+        return apiVersion == null || apiVersion.isBlank() ? "v1" : apiVersion;
+    }
+
+    private static String namespace(String namespace) {
+        return namespace == null || namespace.isBlank() ? "default" : namespace;
+    }
+}
@@ -0,0 +1,187 @@
+package com.decathlon.github.kubernetesstatus.service.transfer;
+
+import com.decathlon.github.kubernetesstatus.data.io.TransferData;
+import com.decathlon.github.kubernetesstatus.data.io.TransferResponse;
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.exception.TechnicalException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group the events to transfer, and send them in a single request to the batch endpoint of the process node, when
+ * the batch is full or its first event waited long enough. Batches are sent without blocking, at most max-in-flight
+ * at the same time as {@link TransferService} does for single events; the next ones wait in a bounded queue.
+ */
+@Component
+@Slf4j
+public class TransferBatcher {
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+
+    private record Pending(TransferData data, CompletableFuture<Long> result) {}
+
+    private final WebClient webClient;
+    private final TransferEncoder encoder;
+    private final AppProperties.BatchProperties properties;
+    // Only times the batches out, they are sent by the WebClient threads
+    private final ScheduledExecutorService scheduler;
+    private final Sinks.Many<List<Pending>> batches;
+    private final Disposable sending;
+    // Results not known yet, failed if the batcher stops before
+    private final Set<CompletableFuture<Long>> unsent = ConcurrentHashMap.newKeySet();
+
+    private List<Pending> batch = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+
+    public TransferBatcher(WebClient webClient, TransferEncoder encoder, AppProperties appProperties) {
+        this.webClient = webClient;
+        this.encoder = encoder;
+        // No transfer configuration on a process node
+        var transfer = appProperties.getTransfer() != null ? appProperties.getTransfer() : new AppProperties.TransferProperties();
+        this.properties = transfer.getBatch();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("transfer-batch").factory());
+        this.batches = Sinks.many().unicast().onBackpressureBuffer(
+                Queues.<List<Pending>>get(Math.max(1, transfer.getMaxPending() / Math.max(1, properties.getMaxSize()))).get());
+        this.sending = batches.asFlux()
+                .flatMap(this::send, transfer.getMaxInFlight())
+                .subscribe();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * @return the GitHub deployment id of this event once its batch is sent, -1 if it failed. Completes with an error
+     * when the process node could not take the batch at all and it is worth sending again.
+     */
+    public CompletableFuture<Long> submit(TransferData data) {
+        var pending = new Pending(data, new CompletableFuture<>());
+        unsent.add(pending.result());
+        pending.result().whenComplete((id, e) -> unsent.remove(pending.result()));
+        synchronized (this) {
+            batch.add(pending);
+            if (batch.size() >= properties.getMaxSize()) {
+                enqueue(take());
+            } else if (batch.size() == 1) {
+                timer = scheduler.schedule(this::flush, properties.getMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        return pending.result();
+    }
+
+    private synchronized List<Pending> take() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        var taken = batch;
+        batch = new ArrayList<>();
+        return taken;
+    }
+
+    private void flush() {
+        var taken = take();
+        if (!taken.isEmpty()) {
+            enqueue(taken);
+        }
+    }
+
+    private void enqueue(List<Pending> taken) {
+        Sinks.EmitResult emitted;
+        // The sink accepts a single producer at a time
+        synchronized (batches) {
+            emitted = batches.tryEmitNext(taken);
+        }
+        if (emitted.isFailure()) {
+            var ex = new TechnicalException("Too many pending transfer batches (" + emitted + ")");
+            taken.forEach(pending -> pending.result().completeExceptionally(ex));
+        }
+    }
+
+    private Mono<Void> send(List<Pending> taken) {
+        return encoder.body(webClient.post().uri(builder -> builder.path("/batch").build()),
+                        taken.stream().map(Pending::data).toList())
+                .retrieve()
+                .bodyToFlux(TransferResponse.class)
+                .collectList()
+                .doOnNext(results -> complete(taken, results))
+                .then()
+                .onErrorResume(ex -> {
+                    fail(taken, ex);
+                    return Mono.empty();
+                });
+    }
+
+    private static void complete(List<Pending> taken, List<TransferResponse> results) {
+        for (int i = 0; i < taken.size(); i++) {
+            var result = i < results.size() ? results.get(i) : null;
+            if (result == null || result.eventId() < 0) {
+                log.error("Transfer failed: {}", result == null ? "no result" : result.status() + " " + result.error());
+            }
+            taken.get(i).result().complete(result == null ? -1 : result.eventId());
+        }
+    }
+
+    private void fail(List<Pending> taken, Throwable ex) {
+        if (ex instanceof WebClientResponseException responseException) {
+            log.error("Transfer of {} events failed: {} with body {}", taken.size(), ex.getMessage(), responseException.getResponseBodyAsString());
+            var tooLarge = responseException.getStatusCode().value() == 413;
+            if (tooLarge) {
+                log.error("The process node takes smaller batches: lower app.transfer.batch.max-size ({}) to its app.process.max-batch-size", properties.getMaxSize());
+            }
+            // A batch too large is not about its events: sent again one by one from the outbox, or captured again later
+            if (tooLarge || TransferService.isRetryable(responseException)) {
+                taken.forEach(pending -> pending.result().completeExceptionally(ex));
+            } else {
+                taken.forEach(pending -> pending.result().complete(-1L));
+            }
+        } else {
+            // The process node is not reachable
+            log.error("Transfer of {} events failed: {}", taken.size(), ex.getMessage());
+            taken.forEach(pending -> pending.result().completeExceptionally(ex));
+        }
+    }
+
+    /**
+     * Send the batches waiting, then the last one. The events still not sent after a while complete with an error, so
+     * their callers keep them in the outbox.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        var last = take();
+        if (!last.isEmpty()) {
+            enqueue(last);
+        }
+        try {
+            CompletableFuture.allOf(unsent.toArray(CompletableFuture[]::new)).get(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Failed ones are known by their callers, the others are failed below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sending.dispose();
+        var stopped = new TechnicalException("Transfer batcher stopped");
+        unsent.forEach(result -> result.completeExceptionally(stopped));
+    }
+}
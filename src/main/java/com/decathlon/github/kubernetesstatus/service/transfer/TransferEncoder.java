@@ -0,0 +1,69 @@
+package com.decathlon.github.kubernetesstatus.service.transfer;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.exception.TechnicalException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Write the events sent to the process node in the configured format: JSON, or CBOR (a binary JSON that does not
+ * repeat the field names as text), optionally gzipped. The responses stay in JSON.
+ * <p>
+ * Both are written with the application {@link ObjectMapper} settings, as the plain JSON of the WebClient codecs.
+ */
+@Component
+public class TransferEncoder {
+    private final AppProperties.EncodingProperties properties;
+    private final ObjectMapper mapper;
+
+    public TransferEncoder(AppProperties appProperties, ObjectMapper objectMapper) {
+        // No transfer configuration on a process node
+        this.properties = appProperties.getTransfer() != null ? appProperties.getTransfer().getEncoding() : new AppProperties.EncodingProperties();
+        this.mapper = properties.getFormat() == AppProperties.EncodingProperties.Format.CBOR
+                ? objectMapper.copyWith(new CBORFactory())
+                : objectMapper;
+    }
+
+    public MediaType contentType() {
+        return properties.getFormat() == AppProperties.EncodingProperties.Format.CBOR ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Set the body of this request, with its content type and encoding.
+     */
+    public WebClient.RequestHeadersSpec<?> body(WebClient.RequestBodySpec request, Object body) {
+        request.contentType(contentType()).accept(MediaType.APPLICATION_JSON);
+        if (properties.getFormat() == AppProperties.EncodingProperties.Format.JSON && !properties.isGzip()) {
+            // Written by the WebClient codecs, as before
+            return request.bodyValue(body);
+        }
+        if (properties.isGzip()) {
+            request.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return request.bodyValue(encode(body));
+    }
+
+    public byte[] encode(Object body) {
+        try {
+            var bytes = mapper.writeValueAsBytes(body);
+            if (!properties.isGzip()) {
+                return bytes;
+            }
+            var out = new ByteArrayOutputStream(bytes.length / 2);
+            try (var gzip = new GZIPOutputStream(out)) {
+                gzip.write(bytes);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new TechnicalException(e);
+        }
+    }
+}
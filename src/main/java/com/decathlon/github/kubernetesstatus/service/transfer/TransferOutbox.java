@@ -0,0 +1,368 @@
+package com.decathlon.github.kubernetesstatus.service.transfer;
+
+import com.decathlon.github.kubernetesstatus.data.io.TransferData;
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.exception.TechnicalException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Events the process node could not take, kept on disk and sent again in order until it does.
+ * <p>
+ * Events are appended, one JSON per line, to segment files. An ack file holds the position of the first event not
+ * sent yet. Segments fully sent are deleted. While the outbox is not empty, new events are appended too, so they are
+ * never sent before older ones.
+ */
+@Component
+@Slf4j
+public class TransferOutbox {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String ACK_FILE = "ack";
+    private static final int READ_BUFFER = 8192;
+
+    private record Entry(long segment, long offset, int length, TransferData data) {}
+
+    private final AppProperties.OutboxProperties properties;
+    private final ObjectMapper mapper;
+    private final Counter readFailures;
+
+    private Path directory;
+    // Write position
+    private long writeSegment;
+    private long writeOffset;
+    // First event not sent yet
+    private long ackSegment;
+    private long ackOffset;
+    private long pending;
+    private long size;
+
+    private Thread replayer;
+    private volatile boolean running;
+
+    public TransferOutbox(AppProperties appProperties, ObjectMapper mapper, MeterRegistry meterRegistry) {
+        // No transfer configuration on a process node
+        this.properties = appProperties.getTransfer() != null ? appProperties.getTransfer().getOutbox() : new AppProperties.OutboxProperties();
+        this.mapper = mapper;
+        Gauge.builder("transfer.outbox.pending", this, TransferOutbox::pending)
+                .description("Events waiting in the outbox to be sent again")
+                .register(meterRegistry);
+        this.readFailures = Counter.builder("transfer.outbox.read.failures")
+                .description("Outbox reads or acks that failed, the replay goes on after the retry delay")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Open the outbox and replay what it holds with this sender: a Mono error is retried, a value (even -1) is final.
+     */
+    public synchronized void start(Function<TransferData, Mono<Long>> sender) {
+        if (!isEnabled() || replayer != null) {
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            throw new TechnicalException(e);
+        }
+        running = true;
+        replayer = Thread.ofVirtual().name("transfer-outbox").start(() -> replay(sender));
+    }
+
+    public synchronized boolean isEmpty() {
+        return pending == 0;
+    }
+
+    public synchronized long pending() {
+        return pending;
+    }
+
+    /**
+     * @return true if the event is stored, false if the outbox is full.
+     */
+    public boolean append(TransferData data) {
+        byte[] line;
+        try {
+            line = (mapper.writeValueAsString(data) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new TechnicalException(e);
+        }
+        synchronized (this) {
+            if (size + line.length > properties.getMaxSize().toBytes()) {
+                log.error("Transfer outbox is full ({}), event dropped", properties.getMaxSize());
+                return false;
+            }
+            try {
+                if (writeOffset > 0 && writeOffset + line.length > properties.getSegmentSize().toBytes()) {
+                    writeSegment++;
+                    writeOffset = 0;
+                }
+                try (var channel = FileChannel.open(segment(writeSegment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    channel.write(ByteBuffer.wrap(line));
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                log.error("Cannot write in transfer outbox: {}", e.getMessage());
+                return false;
+            }
+            writeOffset += line.length;
+            size += line.length;
+            pending++;
+            notifyAll();
+        }
+        return true;
+    }
+
+    private void replay(Function<TransferData, Mono<Long>> sender) {
+        var delay = properties.getRetryDelay();
+        while (running) {
+            try {
+                try {
+                    var entry = next();
+                    if (entry == null) {
+                        continue;
+                    }
+                    try {
+                        var id = sender.apply(entry.data()).block();
+                        if (id == null || id < 0) {
+                            log.warn("Transfer of {} on {} refused by the process node, removed from outbox", entry.data().ref(),
+                                    entry.data().repo() != null ? entry.data().repo().getName() : null);
+                        }
+                        ack(entry);
+                        delay = properties.getRetryDelay();
+                    } catch (RuntimeException e) {
+                        log.warn("Transfer from outbox failed ({} pending), retrying in {}: {}", pending(), delay, e.getMessage());
+                        Thread.sleep(delay);
+                        delay = min(delay.multipliedBy(2), properties.getMaxRetryDelay());
+                    }
+                } catch (IOException e) {
+                    // The disk may come back (full, remounted...): the events are still there
+                    readFailures.increment();
+                    log.error("Cannot read transfer outbox ({} pending), retrying in {}: {}", pending(), delay, e.getMessage());
+                    Thread.sleep(delay);
+                    delay = min(delay.multipliedBy(2), properties.getMaxRetryDelay());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the first event not sent yet, null if none came within a second.
+     */
+    private synchronized Entry next() throws IOException, InterruptedException {
+        while (true) {
+            if (pending == 0) {
+                wait(1000);
+                return null;
+            }
+            var line = readLine(segment(ackSegment), ackOffset);
+            if (line != null) {
+                try {
+                    return new Entry(ackSegment, ackOffset, line.length, mapper.readValue(line, TransferData.class));
+                } catch (JsonProcessingException e) {
+                    log.error("Unreadable event in transfer outbox, skipped: {}", e.getOriginalMessage());
+                    ackOffset += line.length;
+                    pending--;
+                    saveAck();
+                    continue;
+                }
+            }
+            if (ackSegment >= writeSegment) {
+                // Should not happen: pending but nothing to read
+                pending = 0;
+                return null;
+            }
+            // End of this segment: go on with the next one
+            deleteSegment(ackSegment);
+            ackSegment++;
+            ackOffset = 0;
+            saveAck();
+        }
+    }
+
+    private synchronized void ack(Entry entry) throws IOException {
+        if (entry.segment() != ackSegment || entry.offset() != ackOffset) {
+            return;
+        }
+        ackOffset += entry.length();
+        pending--;
+        if (pending == 0 && ackSegment == writeSegment) {
+            // Everything is sent: start again with an empty segment
+            deleteSegment(ackSegment);
+            writeSegment++;
+            writeOffset = 0;
+            ackSegment = writeSegment;
+            ackOffset = 0;
+            size = 0;
+        }
+        saveAck();
+    }
+
+    private void open() throws IOException {
+        directory = Path.of(properties.getDirectory());
+        Files.createDirectories(directory);
+
+        var segments = segments();
+        var ackFile = directory.resolve(ACK_FILE);
+        if (Files.exists(ackFile)) {
+            var ack = Files.readString(ackFile).trim().split(" ");
+            ackSegment = Long.parseLong(ack[0]);
+            ackOffset = Long.parseLong(ack[1]);
+        } else {
+            ackSegment = segments.isEmpty() ? 0 : segments.get(0);
+            ackOffset = 0;
+        }
+        writeSegment = segments.isEmpty() ? ackSegment : Math.max(ackSegment, segments.get(segments.size() - 1));
+        writeOffset = Files.exists(segment(writeSegment)) ? truncatePartialLine(segment(writeSegment)) : 0;
+
+        for (var seq : segments) {
+            if (seq < ackSegment) {
+                deleteSegment(seq);
+            } else {
+                size += Files.size(segment(seq));
+                pending += countLines(segment(seq), seq == ackSegment ? ackOffset : 0);
+            }
+        }
+        if (pending > 0) {
+            log.info("Transfer outbox holds {} events, sending them again", pending);
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            var segments = new ArrayList<Long>();
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+            segments.sort(null);
+            return segments;
+        }
+    }
+
+    private Path segment(long seq) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+    private void deleteSegment(long seq) throws IOException {
+        var file = segment(seq);
+        if (Files.exists(file)) {
+            size = Math.max(0, size - Files.size(file));
+            Files.delete(file);
+        }
+    }
+
+    private void saveAck() throws IOException {
+        var tmp = directory.resolve(ACK_FILE + ".tmp");
+        Files.writeString(tmp, ackSegment + " " + ackOffset);
+        Files.move(tmp, directory.resolve(ACK_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the complete line (with its '\n') starting at this offset, null if there is none.
+     */
+    private static byte[] readLine(Path file, long offset) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var line = new ByteArrayOutputStream();
+            var buffer = ByteBuffer.allocate(READ_BUFFER);
+            long position = offset;
+            while (channel.read(buffer, position) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    var b = buffer.get();
+                    line.write(b);
+                    if (b == '\n') {
+                        return line.toByteArray();
+                    }
+                }
+                position += buffer.limit();
+                buffer.clear();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Remove the end of an event written when the node stopped, so the next one starts on its own line.
+     *
+     * @return the new size of the file.
+     */
+    private static long truncatePartialLine(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buffer = ByteBuffer.allocate(1);
+            long end = channel.size();
+            while (end > 0 && channel.read(buffer.clear(), end - 1) == 1 && buffer.get(0) != '\n') {
+                end--;
+            }
+            if (end < channel.size()) {
+                log.warn("Partial event of {} bytes at the end of transfer outbox {}, removed", channel.size() - end, file.getFileName());
+                channel.truncate(end);
+                channel.force(false);
+            }
+            return end;
+        }
+    }
+
+    private static long countLines(Path file, long offset) throws IOException {
+        long count = 0;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(READ_BUFFER);
+            long position = offset;
+            int read;
+            while ((read = channel.read(buffer, position)) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() == '\n') {
+                        count++;
+                    }
+                }
+                position += read;
+                buffer.clear();
+            }
+        }
+        return count;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) < 0 ? a : b;
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (replayer != null) {
+            replayer.interrupt();
+            replayer = null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.decathlon.github.kubernetesstatus.service.transfer;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * GitHub deployment id by transfer idempotency key, so a capture node sending an event again (after a timeout, from
+ * its outbox, ...) gets the same answer without a new deployment status on GitHub. A copy received while the first one
+ * is still being sent waits for its answer.
+ */
+@Service
+public class TransferResponseCache {
+    private final Cache<String, Long> ids;
+    private final Map<String, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+
+    public TransferResponseCache(AppProperties appProperties, MeterRegistry meterRegistry) {
+        var properties = appProperties.getGithub().getTransferCache();
+        this.ids = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl())
+                .maximumSize(properties.getMaxSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, ids, "transfer.responses");
+    }
+
+    /**
+     * @return the deployment id sent back for this key, or -1 if unknown.
+     */
+    public long get(String idempotencyKey) {
+        var id = idempotencyKey != null ? ids.getIfPresent(idempotencyKey) : null;
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param sender sends the event to GitHub, only if no other copy of it was or is being sent.
+     * @return the deployment id of this event: the known one, the one of the copy being sent, or the one sent now.
+     */
+    public long get(String idempotencyKey, LongSupplier sender) {
+        if (idempotencyKey == null) {
+            return sender.getAsLong();
+        }
+        var known = get(idempotencyKey);
+        if (known > 0) {
+            return known;
+        }
+        var mine = new CompletableFuture<Long>();
+        var running = inFlight.putIfAbsent(idempotencyKey, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            // Sent by another caller between the lookup and now
+            known = get(idempotencyKey);
+            var id = known > 0 ? known : sender.getAsLong();
+            put(idempotencyKey, id);
+            mine.complete(id);
+            return id;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(idempotencyKey, mine);
+        }
+    }
+
+    /**
+     * Only the successful transfers are kept: a failed one is tried again.
+     */
+    public void put(String idempotencyKey, long id) {
+        if (idempotencyKey != null && id > 0) {
+            ids.put(idempotencyKey, id);
+        }
+    }
+}
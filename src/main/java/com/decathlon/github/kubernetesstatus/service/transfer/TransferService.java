@@ -2,44 +2,123 @@ package com.decathlon.github.kubernetesstatus.service.transfer;
 
 import com.decathlon.github.kubernetesstatus.data.io.TransferData;
 import com.decathlon.github.kubernetesstatus.data.io.TransferResponse;
+import com.decathlon.github.kubernetesstatus.data.properties.AppMode;
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.exception.TechnicalException;
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.UpdateService;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
 
 import java.util.Map;
 
+/**
+ * Send the events to the process node without blocking: at most max-in-flight requests are sent at the same time,
+ * the next ones wait in a bounded queue. When the queue is full or the process node cannot take the event, it is kept
+ * in the {@link TransferOutbox} if enabled, else it fails at once and the GHD is captured again later.
+ */
 @Service
-@AllArgsConstructor
 @Slf4j
 public class TransferService {
-    private WebClient webClient;
-    public long executeUpdate(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload) {
-        var transferData=new TransferData(repo, ref, env, status, payload);
-
-        try {
-            var resp = webClient.post()
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(Mono.just(transferData), TransferData.class)
-                    .retrieve().toEntity(TransferResponse.class).block();
-
-            assert resp != null;
-            if (!resp.getStatusCode().is2xxSuccessful()) {
-                log.error("Transfer failed: {}", resp.getStatusCode());
-                return -1;
-            }
+    private record Job(TransferData data, MonoSink<Long> result) {}
+
+    private final WebClient webClient;
+    private final TransferEncoder encoder;
+    private final TransferBatcher batcher;
+    private final TransferOutbox outbox;
+    private final Sinks.Many<Job> jobs;
+
+    public TransferService(WebClient webClient, TransferEncoder encoder, TransferBatcher batcher, TransferOutbox outbox, AppProperties appProperties) {
+        this.webClient = webClient;
+        this.encoder = encoder;
+        this.batcher = batcher;
+        this.outbox = outbox;
+        // No transfer configuration on a process node
+        var properties = appProperties.getTransfer() != null ? appProperties.getTransfer() : new AppProperties.TransferProperties();
+        this.jobs = Sinks.many().unicast().onBackpressureBuffer(Queues.<Job>get(properties.getMaxPending()).get());
+        this.jobs.asFlux()
+                .flatMap(job -> send(job.data())
+                        .doOnNext(job.result()::success)
+                        .doOnError(job.result()::error)
+                        .onErrorResume(e -> Mono.empty()), properties.getMaxInFlight())
+                .subscribe();
+        if (appProperties.getMode() == AppMode.CAPTURE_AND_TRANSFER) {
+            outbox.start(this::send);
+        }
+    }
 
-            var body = resp.getBody();
-            assert body != null;
-            return body.eventId();
-        }catch(WebClientResponseException ex){
-            log.error("Transfer failed: {} with body {}", ex.getMessage(), ex.getResponseBodyAsString());
-            return -1;
+    /**
+     * @param generation            the generation of the GitHub deployment resource.
+     * @param sourceResourceVersion the resource version of the source object the status was computed from.
+     * @return the GitHub deployment id, -1 if the transfer failed, {@link UpdateService#QUEUED} if kept in the outbox.
+     */
+    public Mono<Long> executeUpdate(GitHubDeploymentSpec.RepositoryDetail repo, String ref, long env, KubeObjectResult status, Map<String, String> payload,
+                                    long generation, String sourceResourceVersion) {
+        var transferData=new TransferData(repo, ref, env, status, payload, generation, sourceResourceVersion);
+        if (outbox.isEnabled() && !outbox.isEmpty()) {
+            // Older events are still waiting: this one must not go before them
+            return keep(transferData);
         }
+        Mono<Long> sent = batcher.isEnabled() ? Mono.fromFuture(() -> batcher.submit(transferData)) : enqueue(transferData);
+        return sent.onErrorResume(e -> {
+            if (outbox.isEnabled()) {
+                log.warn("Transfer failed, kept in outbox: {}", e.getMessage());
+                return keep(transferData);
+            }
+            log.error("Transfer failed: {}", e.getMessage());
+            return Mono.just(-1L);
+        });
+    }
+
+    private Mono<Long> keep(TransferData transferData) {
+        // Written to disk, out of the HTTP client threads
+        return Mono.fromCallable(() -> outbox.append(transferData) ? UpdateService.QUEUED : -1L)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Long> enqueue(TransferData transferData) {
+        return Mono.create(sink -> {
+            Sinks.EmitResult emitted;
+            // The sink accepts a single producer at a time
+            synchronized (jobs) {
+                emitted = jobs.tryEmitNext(new Job(transferData, sink));
+            }
+            if (emitted.isFailure()) {
+                sink.error(new TechnicalException("Too many pending transfers (" + emitted + ")"));
+            }
+        });
+    }
+
+    private Mono<Long> send(TransferData transferData) {
+        return encoder.body(webClient.post(), transferData)
+                .retrieve().toEntity(TransferResponse.class)
+                .map(resp -> {
+                    if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
+                        log.error("Transfer failed: {}", resp.getStatusCode());
+                        return -1L;
+                    }
+                    return resp.getBody().eventId();
+                })
+                .onErrorResume(WebClientResponseException.class, ex -> {
+                    log.error("Transfer failed: {} with body {}", ex.getMessage(), ex.getResponseBodyAsString());
+                    // The process node cannot take it now: worth sending again later
+                    if (isRetryable(ex)) {
+                        return Mono.error(ex);
+                    }
+                    return Mono.just(-1L);
+                });
+    }
+
+    static boolean isRetryable(WebClientResponseException ex) {
+        var status = ex.getStatusCode().value();
+        return ex.getStatusCode().is5xxServerError() || status == 408 || status == 429;
     }
 }
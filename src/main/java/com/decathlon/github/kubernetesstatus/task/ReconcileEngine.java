@@ -0,0 +1,124 @@
+package com.decathlon.github.kubernetesstatus.task;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppMode;
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.CaptureService;
+import com.decathlon.github.kubernetesstatus.service.kubernetes.InformerCache;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Informer driven reconciliation: each change on a GHD or on its source object enqueues the GHD key,
+ * and only those GHD are captured again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReconcileEngine {
+    private final AppProperties appProperties;
+    private final InformerCache informerCache;
+    private final CaptureService captureService;
+    private final ReconcileWorkerPool workerPool;
+    private final ReconcileQueue queue;
+
+    private ExecutorService dispatcher;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (appProperties.getMode() == AppMode.PROCESS || !appProperties.getKubernetes().isInformer() || dispatcher != null) {
+            return;
+        }
+        queue.start();
+        dispatcher = Executors.newSingleThreadExecutor();
+        dispatcher.submit(this::run);
+        informerCache.start(queue::changed);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (dispatcher == null) {
+            return;
+        }
+        informerCache.stop();
+        queue.shutDown();
+        dispatcher.shutdownNow();
+        dispatcher = null;
+    }
+
+    public boolean isRunning() {
+        return dispatcher != null;
+    }
+
+    /**
+     * Enqueue a key without any change known (resync): skipped while it is in backoff.
+     */
+    public void enqueue(String key) {
+        queue.add(key);
+    }
+
+    private void run() {
+        while (queue.isRunning()) {
+            String key;
+            try {
+                key = queue.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (key == null) {
+                return;
+            }
+            var deployment = informerCache.getDeployment(key);
+            if (deployment == null) {
+                log.debug("[{}] GitHub deployment deleted, nothing to do", key);
+                queue.forget(key);
+                queue.done(key);
+                continue;
+            }
+            if (queue.isBackingOff(key)) {
+                // Still failing recently and not changed since, it is already scheduled to be retried after its backoff.
+                queue.done(key);
+                continue;
+            }
+            // The key stays in processing until done: a new change meanwhile is merged and processed right after.
+            workerPool.submitAsync(deployment, () -> reconcile(key));
+        }
+    }
+
+    /**
+     * The source is read on the worker, then the worker is released: the GHD status is patched when GitHub (or the
+     * process node) answers, and only then the key is done. The concurrency limits are held until then.
+     */
+    private Mono<Boolean> reconcile(String key) {
+        return Mono.defer(() -> {
+                    // Take the latest version from the cache, it may have changed while waiting for a worker.
+                    var deployment = informerCache.getDeployment(key);
+                    if (deployment == null) {
+                        return Mono.<Boolean>empty();
+                    }
+                    log.info("[{}] Checking status of GitHub deployment", key);
+                    return captureService.captureAsync(deployment)
+                            .defaultIfEmpty(false);
+                })
+                .onErrorResume(e -> {
+                    log.error("[{}] Error while checking status of deployment: {}", key, e.getMessage());
+                    return Mono.just(false);
+                })
+                .doOnNext(success -> {
+                    if (success) {
+                        queue.forget(key);
+                    } else {
+                        queue.failure(key);
+                    }
+                })
+                .doFinally(signal -> queue.done(key));
+    }
+}
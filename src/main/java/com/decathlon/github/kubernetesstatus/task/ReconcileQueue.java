@@ -0,0 +1,132 @@
+package com.decathlon.github.kubernetesstatus.task;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import io.kubernetes.client.extended.workqueue.DefaultDelayingQueue;
+import io.kubernetes.client.extended.workqueue.DelayingQueue;
+import io.kubernetes.client.extended.workqueue.ratelimiter.BucketRateLimiter;
+import io.kubernetes.client.extended.workqueue.ratelimiter.ItemExponentialFailureRateLimiter;
+import io.kubernetes.client.extended.workqueue.ratelimiter.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Work queue of GHD keys (namespace/name), modelled on the client-go workqueue:
+ * <ul>
+ *     <li>a key enqueued several times before being processed is processed once,</li>
+ *     <li>a key failing is retried with a per-key exponential backoff,</li>
+ *     <li>a global token bucket paces how many keys are processed per second.</li>
+ * </ul>
+ * The backoff is also used by the polling mode to skip keys still failing.
+ */
+@Component
+@Slf4j
+public class ReconcileQueue {
+    private final RateLimiter<String> failureLimiter;
+    private final RateLimiter<String> globalLimiter;
+    private final Map<String, Long> backoffUntil = new ConcurrentHashMap<>();
+
+    private DelayingQueue<String> queue;
+
+    public ReconcileQueue(AppProperties appProperties) {
+        var properties = appProperties.getKubernetes().getQueue();
+        this.failureLimiter = new ItemExponentialFailureRateLimiter<>(properties.getBaseDelay(), properties.getMaxDelay());
+        this.globalLimiter = new BucketRateLimiter<>(properties.getBurst(), properties.getRate(), Duration.ofSeconds(1));
+    }
+
+    public synchronized void start() {
+        if (queue == null) {
+            queue = new DefaultDelayingQueue<>();
+        }
+    }
+
+    public synchronized void shutDown() {
+        if (queue != null) {
+            queue.shutDown();
+            queue = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return queue != null;
+    }
+
+    public void add(String key) {
+        var q = queue;
+        if (q != null) {
+            q.add(key);
+        }
+    }
+
+    /**
+     * Wait for the next key to process, and for a token of the global limiter.
+     *
+     * @return the key, or null if the queue is shut down.
+     */
+    public String get() throws InterruptedException {
+        var q = queue;
+        if (q == null) {
+            return null;
+        }
+        var key = q.get();
+        if (key != null) {
+            acquire();
+        }
+        return key;
+    }
+
+    public void done(String key) {
+        var q = queue;
+        if (q != null) {
+            q.done(key);
+        }
+    }
+
+    /**
+     * Wait for a token of the global limiter.
+     */
+    public void acquire() throws InterruptedException {
+        var wait = globalLimiter.when("");
+        if (!wait.isZero() && !wait.isNegative()) {
+            Thread.sleep(wait.toMillis());
+        }
+    }
+
+    /**
+     * Record a success (or a deletion): reset the backoff of the key.
+     */
+    public void forget(String key) {
+        failureLimiter.forget(key);
+        backoffUntil.remove(key);
+    }
+
+    /**
+     * Record a failure: the key will be enqueued again after its backoff delay.
+     */
+    public void failure(String key) {
+        var delay = failureLimiter.when(key);
+        log.info("[{}] Will retry in {} ({} failures)", key, delay, failureLimiter.numRequeues(key));
+        backoffUntil.put(key, System.currentTimeMillis() + delay.toMillis());
+        var q = queue;
+        if (q != null) {
+            q.addAfter(key, delay);
+        }
+    }
+
+    /**
+     * Record a change of the key (GHD or source updated): it is processed right away even if still in backoff, as the
+     * change may fix it. Its failure count is kept, so a key still failing after the change backs off longer.
+     */
+    public void changed(String key) {
+        backoffUntil.remove(key);
+        add(key);
+    }
+
+    public boolean isBackingOff(String key) {
+        var until = backoffUntil.get(key);
+        return until != null && until > System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,202 @@
+package com.decathlon.github.kubernetesstatus.task;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Run GHD captures concurrently, with a global limit and a limit per namespace and per repository,
+ * so one slow GitHub call does not hold up every other deployment.
+ */
+@Component
+@Slf4j
+public class ReconcileWorkerPool {
+    /**
+     * A semaphore shared by the tasks of a namespace or of a repository, removed when no task uses it anymore.
+     */
+    private static final class Limit {
+        private final Semaphore semaphore;
+        private int users;
+
+        private Limit(int permits) {
+            this.semaphore = new Semaphore(permits);
+        }
+    }
+
+    private final AppProperties.WorkerProperties properties;
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final Map<String, Limit> perNamespace = new ConcurrentHashMap<>();
+    private final Map<String, Limit> perRepository = new ConcurrentHashMap<>();
+
+    public ReconcileWorkerPool(AppProperties appProperties) {
+        this.properties = appProperties.getKubernetes().getWorkers();
+        this.executor = properties.isVirtualThreads()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(properties.getConcurrency());
+        this.slots = new Semaphore(properties.getConcurrency());
+    }
+
+    public Future<?> submit(GitHubDeployment deployment, Runnable task) {
+        return executor.submit(() -> runLimited(deployment, task));
+    }
+
+    /**
+     * Same as {@link #submit(GitHubDeployment, Runnable)} for a task answering later: the worker is released once the
+     * task is subscribed, but the limits are held until its Mono terminates or is cancelled.
+     */
+    public void submitAsync(GitHubDeployment deployment, Supplier<? extends Mono<?>> task) {
+        executor.submit(() -> {
+            Runnable release;
+            try {
+                release = acquire(deployment);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Mono.defer(task)
+                    .doFinally(signal -> release.run())
+                    .subscribe(null, e -> log.error("Error while checking status of deployment: {}", e.getMessage()));
+        });
+    }
+
+    /**
+     * Process every deployment and wait for them, but no longer than the cycle deadline.
+     * Deployments still pending at the deadline are cancelled, they will be checked on the next cycle.
+     */
+    public void runCycle(Collection<GitHubDeployment> deployments, Consumer<GitHubDeployment> task) {
+        runCycle(deployments::forEach, task);
+    }
+
+    /**
+     * Same as {@link #runCycle(Collection, Consumer)}, but deployments are submitted as soon as the source gives them,
+     * for instance page by page.
+     */
+    public void runCycle(Consumer<Consumer<GitHubDeployment>> source, Consumer<GitHubDeployment> task) {
+        long deadline = System.nanoTime() + properties.getCycleDeadline().toNanos();
+        List<Future<?>> futures = new ArrayList<>();
+        source.accept(deployment -> futures.add(submit(deployment, () -> task.accept(deployment))));
+
+        int cancelled = 0;
+        for (var future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                cancelled++;
+            } catch (ExecutionException e) {
+                log.error("Error while checking status of deployment: {}", e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                return;
+            }
+        }
+        if (cancelled > 0) {
+            log.warn("{} deployments not checked before the cycle deadline of {}", cancelled, properties.getCycleDeadline());
+        }
+    }
+
+    private void runLimited(GitHubDeployment deployment, Runnable task) {
+        Runnable release;
+        try {
+            release = acquire(deployment);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            task.run();
+        } finally {
+            release.run();
+        }
+    }
+
+    /**
+     * Wait for the namespace, repository and global permits of this deployment.
+     *
+     * @return the action giving them back, only the first call does.
+     */
+    private Runnable acquire(GitHubDeployment deployment) throws InterruptedException {
+        var namespaceKey = String.valueOf(deployment.getMetadata().getNamespace());
+        var repo = deployment.getSpec() != null ? deployment.getSpec().getRepository() : null;
+        var repositoryKey = String.valueOf(repo == null ? null : repo.getOrg() == null ? repo.getName() : repo.getOrg() + "/" + repo.getName());
+        var namespace = enter(perNamespace, namespaceKey, properties.getMaxPerNamespace());
+        var repository = enter(perRepository, repositoryKey, properties.getMaxPerRepository());
+
+        // Always acquire in the same order: namespace, repository then global slot.
+        try {
+            namespace.acquire();
+            try {
+                repository.acquire();
+                try {
+                    slots.acquire();
+                } catch (InterruptedException e) {
+                    repository.release();
+                    throw e;
+                }
+            } catch (InterruptedException e) {
+                namespace.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            leave(perRepository, repositoryKey);
+            leave(perNamespace, namespaceKey);
+            throw e;
+        }
+
+        var released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                slots.release();
+                repository.release();
+                namespace.release();
+                leave(perRepository, repositoryKey);
+                leave(perNamespace, namespaceKey);
+            }
+        };
+    }
+
+    private static Semaphore enter(Map<String, Limit> limits, String key, int permits) {
+        return limits.compute(key, (k, limit) -> {
+            var entered = limit != null ? limit : new Limit(permits);
+            entered.users++;
+            return entered;
+        }).semaphore;
+    }
+
+    private static void leave(Map<String, Limit> limits, String key) {
+        limits.computeIfPresent(key, (k, limit) -> --limit.users == 0 ? null : limit);
+    }
+
+    /**
+     * @return the number of namespaces and repositories with a task running or waiting.
+     */
+    int trackedLimits() {
+        return perNamespace.size() + perRepository.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
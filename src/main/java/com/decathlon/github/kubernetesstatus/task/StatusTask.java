@@ -2,8 +2,12 @@ package com.decathlon.github.kubernetesstatus.task;
 
 import com.decathlon.github.kubernetesstatus.data.properties.AppMode;
 import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
 import com.decathlon.github.kubernetesstatus.service.CaptureService;
+import com.decathlon.github.kubernetesstatus.service.kubernetes.DynamicObjectExtractor;
 import com.decathlon.github.kubernetesstatus.service.kubernetes.GHDService;
+import com.decathlon.github.kubernetesstatus.service.kubernetes.InformerCache;
+import io.kubernetes.client.informer.cache.Caches;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -18,20 +22,65 @@ public class StatusTask {
     private AppProperties appProperties;
     private GHDService ghdService;
     private CaptureService captureService;
+    private ReconcileEngine reconcileEngine;
+    private InformerCache informerCache;
+    private ReconcileWorkerPool workerPool;
+    private ReconcileQueue reconcileQueue;
+    private DynamicObjectExtractor dynamicObjectExtractor;
 
     @Scheduled(fixedDelayString = "#{appProperties.kubernetes.getRefreshInSecond()}", timeUnit = TimeUnit.SECONDS)
     public void check(){
         if (appProperties.getMode()== AppMode.PROCESS){
             return;
         }
+        if (appProperties.getKubernetes().isInformer()) {
+            // Changes are already pushed by the informers, polling is only a fallback resync from the local cache.
+            if (reconcileEngine.isRunning() && appProperties.getKubernetes().isResync()) {
+                log.info("Resync of deployments");
+                informerCache.listDeployment().forEach(deployment -> reconcileEngine.enqueue(Caches.metaNamespaceKeyFunc(deployment)));
+            }
+            return;
+        }
         log.info("Checking status of deployments");
-        ghdService.listDeployment().forEach(deployment -> {
-            try {
-                log.info("[{}/{}] Checking status of GitHub deployment", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName());
-                captureService.capture(deployment);
-            }catch(RuntimeException e){
-                log.error("[{}/{}] Error while checking status of deployment: {}", deployment.getMetadata().getNamespace(), deployment.getMetadata().getName(), e.getMessage());
+        dynamicObjectExtractor.clearPrefetch();
+        workerPool.runCycle(submit -> ghdService.forEachPage(page -> {
+            // One list per (apiVersion, kind, namespace) instead of one GET per GHD
+            dynamicObjectExtractor.prefetch(page.stream()
+                    .filter(deployment -> deployment.getSpec() != null && deployment.getSpec().getSourceRef() != null)
+                    .map(deployment -> deployment.getSpec().getSourceRef())
+                    .toList(), appProperties.getKubernetes().getBatchFetchMin());
+            for (var deployment : page) {
+                var key=Caches.metaNamespaceKeyFunc(deployment);
+                if (reconcileQueue.isBackingOff(key)) {
+                    log.debug("[{}] Failed recently, skipping until its backoff expires", key);
+                    continue;
+                }
+                // Paced before taking a worker, so a deployment waiting for its turn holds no namespace or repository slot
+                try {
+                    reconcileQueue.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                submit.accept(deployment);
             }
-        });
+        }), this::checkDeployment);
+    }
+
+    private void checkDeployment(GitHubDeployment deployment) {
+        var key=Caches.metaNamespaceKeyFunc(deployment);
+        boolean success;
+        try {
+            log.info("[{}] Checking status of GitHub deployment", key);
+            success=captureService.capture(deployment);
+        }catch(RuntimeException e){
+            log.error("[{}] Error while checking status of deployment: {}", key, e.getMessage());
+            success=false;
+        }
+        if (success) {
+            reconcileQueue.forget(key);
+        }else{
+            reconcileQueue.failure(key);
+        }
     }
 }
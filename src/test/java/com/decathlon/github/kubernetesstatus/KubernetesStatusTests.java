@@ -1,9 +1,15 @@
 package com.decathlon.github.kubernetesstatus;
 
 import com.decathlon.github.kubernetesstatus.configuration.transfer.TransferConfiguration;
+import com.decathlon.github.kubernetesstatus.data.io.TransferData;
 import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
 import com.decathlon.github.kubernetesstatus.mock.MockServer;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubEnvironmentService;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -15,8 +21,17 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
 import static com.decathlon.github.kubernetesstatus.mock.OauthTools.CLIENT_CREDENTIAL;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -29,6 +44,10 @@ class KubernetesStatusTests {
     OAuth2ClientProperties oAuth2ClientProperties;
     @Autowired
     AppProperties appProperties;
+    @Autowired
+    GitHubEnvironmentService gitHubEnvironmentService;
+    @Autowired
+    ObjectMapper objectMapper;
 
     @BeforeAll
     public static void init() {
@@ -153,6 +172,116 @@ class KubernetesStatusTests {
         assertThat(body.get("eventId").asLong()).isEqualTo(6);
     }
 
+    @Test
+    void batchTransfer() {
+        var transferUrl = "/transfer/batch";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add("Authorization", "Bearer " + CLIENT_CREDENTIAL);
+
+        String req = """
+                [
+                  {
+                    "repo":{
+                      "name": "my-repo",
+                      "environment": "my-env"
+                    },
+                    "ref": "1245",
+                    "env": -1,
+                    "status": {
+                      "status": "CURRENT",
+                      "message": "OK"
+                    },
+                    "payload": {
+                      "url": "http://here"
+                    }
+                  },
+                  {
+                    "repo":{
+                      "name": "my-repo",
+                      "environment": "my-env"
+                    },
+                    "env": -1
+                  }
+                ]
+                """;
+
+        var ret = rtTest.exchange(transferUrl, HttpMethod.POST, new HttpEntity<>(req, headers), JsonNode.class);
+
+        assertThat(ret.getStatusCode().value()).isEqualTo(200);
+        var body = ret.getBody();
+        assertThat(body).isNotNull();
+        assertThat(body.size()).isEqualTo(2);
+        assertThat(body.get(0).get("eventId").asLong()).isEqualTo(5);
+        assertThat(body.get(0).get("status").asInt()).isEqualTo(200);
+        assertThat(body.get(1).get("eventId").asLong()).isEqualTo(-1);
+        assertThat(body.get(1).get("status").asInt()).isEqualTo(406);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private ResponseEntity<JsonNode> post(String url, MediaType contentType, boolean gzip, byte[] body) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        headers.add("Authorization", "Bearer " + CLIENT_CREDENTIAL);
+        if (gzip) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return rtTest.exchange(url, HttpMethod.POST, new HttpEntity<>(gzip ? gzip(body) : body, headers), JsonNode.class);
+    }
+
+    @Test
+    void compactTransfer() throws IOException {
+        var data = new TransferData(new GitHubDeploymentSpec.RepositoryDetail("my-repo", "my-env"), "1245", -1,
+                new KubeObjectResult(KubeObjectStatus.CURRENT, "OK"), Map.of("url", "http://here"), 1, "100");
+        var cbor = Jackson2ObjectMapperBuilder.cbor().build();
+
+        // As written by a capture node, one by one or by batch: responses stay in JSON
+        var ret = post("/transfer", MediaType.APPLICATION_CBOR, false, cbor.writeValueAsBytes(data));
+        assertThat(ret.getStatusCode().value()).isEqualTo(200);
+        assertThat(ret.getBody().get("eventId").asLong()).isEqualTo(5);
+
+        ret = post("/transfer", MediaType.APPLICATION_JSON, true, objectMapper.writeValueAsBytes(data));
+        assertThat(ret.getStatusCode().value()).isEqualTo(200);
+        assertThat(ret.getBody().get("eventId").asLong()).isEqualTo(5);
+
+        ret = post("/transfer/batch", MediaType.APPLICATION_CBOR, true, cbor.writeValueAsBytes(List.of(data)));
+        assertThat(ret.getStatusCode().value()).isEqualTo(200);
+        assertThat(ret.getBody().size()).isEqualTo(1);
+        assertThat(ret.getBody().get(0).get("eventId").asLong()).isEqualTo(5);
+    }
+
+    @Test
+    void gzipBombRefused() throws IOException {
+        // A valid empty batch, but inflating to more than the 64MB cap
+        var body = "[" + " ".repeat(65 * 1024 * 1024) + "]";
+
+        var ret = post("/transfer/batch", MediaType.APPLICATION_JSON, true, body.getBytes(StandardCharsets.UTF_8));
+        assertThat(ret.getStatusCode().value()).isEqualTo(400);
+
+        ret = post("/transfer/batch", MediaType.APPLICATION_JSON, true, "[ ]".getBytes(StandardCharsets.UTF_8));
+        assertThat(ret.getStatusCode().value()).isEqualTo(200);
+    }
+
+    @Test
+    void asyncUpdate() {
+        var id = gitHubEnvironmentService.executeUpdateAsync(
+                new GitHubDeploymentSpec.RepositoryDetail("my-repo", "my-env"),
+                "1245",
+                -1,
+                new KubeObjectResult(KubeObjectStatus.CURRENT, "OK"),
+                Map.of("url", "http://here")).block();
+
+        assertThat(id).isEqualTo(5);
+    }
+
     @Test
     void transfertError422() {
         var transferUrl = "/transfer";
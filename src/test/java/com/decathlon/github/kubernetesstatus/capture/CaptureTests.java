@@ -1,9 +1,13 @@
 package com.decathlon.github.kubernetesstatus.capture;
 
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentStatus;
+import com.decathlon.github.kubernetesstatus.service.CaptureMemo;
 import com.decathlon.github.kubernetesstatus.service.CaptureService;
 import com.decathlon.github.kubernetesstatus.service.UpdateService;
+import com.decathlon.github.kubernetesstatus.service.extract.ExtractRuleCache;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubStatusDebouncer;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
 import com.decathlon.github.kubernetesstatus.service.kubernetes.DynamicObjectExtractor;
@@ -11,11 +15,18 @@ import com.decathlon.github.kubernetesstatus.service.kubernetes.EventManager;
 import io.kubernetes.client.util.generic.dynamic.Dynamics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.yaml.snakeyaml.Yaml;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 class CaptureTests {
 
@@ -98,11 +109,14 @@ class CaptureTests {
         doe = Mockito.mock(DynamicObjectExtractor.class);
         us = Mockito.mock(UpdateService.class);
         em = Mockito.mock(EventManager.class);
+        Mockito.when(us.executeUpdate(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any())).thenReturn(Mono.just(0L));
 
         captureService = new CaptureService(
                 doe,
                 us,
-                em
+                em,
+                new ExtractRuleCache(),
+                new CaptureMemo()
         );
     }
 
@@ -142,7 +156,7 @@ class CaptureTests {
         dyn.getRaw().get("metadata").getAsJsonObject().addProperty("namespace", "test");
         captureService.capture(deployment);
 
-        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1234", -1, new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1"), Collections.emptyMap());
+        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1234", -1, new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1"), Collections.emptyMap(), 0L, null);
 
         var patch = GitHubDeployment.builder()
                 .withStatus(GitHubDeploymentStatus.builder()
@@ -151,10 +165,14 @@ class CaptureTests {
                         .withStatus(KubeObjectStatus.IN_PROGRESS)
                         .withRef("1234")
                         .withDeploymentId(0)
+                        .withStatusHash(CaptureMemo.hash("1234", new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1")))
                         .build()
                 ).build();
 
-        Mockito.verify(em).addEvent(deployment, new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1"), deployment.getSpec().getSourceRef(), patch);
+        var sentPatch = ArgumentCaptor.forClass(GitHubDeployment.class);
+        Mockito.verify(em).addEvent(Mockito.eq(deployment), Mockito.eq(new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1")), Mockito.eq(deployment.getSpec().getSourceRef()), sentPatch.capture());
+        assertThat(sentPatch.getValue().getStatus().getObservedAt()).isNotNull();
+        assertThat(sentPatch.getValue()).usingRecursiveComparison().ignoringFields("status.observedAt").isEqualTo(patch);
 
         // Capture the ref from annotations
         deployment.getSpec().getExtract().setContainerName(null);
@@ -162,7 +180,7 @@ class CaptureTests {
         deployment.getSpec().getExtract().setRegexp(null);
         deployment.getSpec().getExtract().setTemplate("release-");
         captureService.capture(deployment);
-        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "release-54321", -1, new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1"), Collections.emptyMap());
+        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "release-54321", -1, new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1"), Collections.emptyMap(), 0L, null);
     }
 
     @Test
@@ -174,7 +192,104 @@ class CaptureTests {
 
         captureService.capture(deployment);
 
-        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"));
+        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"), 0L, null);
+    }
+
+    @Test
+    void testUnchangedSourceIsSkipped(){
+        var deployment = yaml.loadAs(simpleGhd, GitHubDeployment.class);
+        deployment.getMetadata().setUid("ghd-uid");
+        deployment.getMetadata().setGeneration(1L);
+
+        var dyn = Dynamics.newFromYaml(depOK);
+        dyn.getRaw().get("metadata").getAsJsonObject().addProperty("resourceVersion", "100");
+        Mockito.when(doe.extractKubeObject(deployment.getSpec().getSourceRef())).thenReturn(dyn);
+
+        captureService.capture(deployment);
+        captureService.capture(deployment);
+        Mockito.verify(us, Mockito.times(1)).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"), 1L, "100");
+
+        // The source changed
+        var changed = Dynamics.newFromYaml(depOK);
+        changed.getRaw().get("metadata").getAsJsonObject().addProperty("resourceVersion", "101");
+        Mockito.when(doe.extractKubeObject(deployment.getSpec().getSourceRef())).thenReturn(changed);
+        captureService.capture(deployment);
+        Mockito.verify(us, Mockito.times(1)).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"), 1L, "101");
+    }
+
+    @Test
+    void testQueuedStatusIsCapturedAgain(){
+        var deployment = yaml.loadAs(simpleGhd, GitHubDeployment.class);
+        deployment.getMetadata().setUid("ghd-uid");
+        deployment.getMetadata().setGeneration(1L);
+        Mockito.when(us.executeUpdate(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any())).thenReturn(Mono.just(UpdateService.QUEUED));
+
+        var dyn = Dynamics.newFromYaml(depOK);
+        dyn.getRaw().get("metadata").getAsJsonObject().addProperty("resourceVersion", "100");
+        Mockito.when(doe.extractKubeObject(deployment.getSpec().getSourceRef())).thenReturn(dyn);
+
+        // Kept in the outbox: no deployment id to patch yet, the same source is sent again on the next capture
+        assertThat(captureService.capture(deployment)).isTrue();
+        assertThat(captureService.capture(deployment)).isTrue();
+        Mockito.verify(us, Mockito.times(2)).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"), 1L, "100");
+        Mockito.verifyNoInteractions(em);
+    }
+
+    @Test
+    void testIntermediateStatusesAreMerged() throws InterruptedException {
+        var properties = new AppProperties();
+        properties.setGithub(new AppProperties.GitHubProperties());
+        properties.getGithub().getDebounce().setEnabled(true);
+        properties.getGithub().getDebounce().setWindow(Duration.ofMillis(200));
+        var debouncer = new GitHubStatusDebouncer(properties);
+        List<String> posted = new CopyOnWriteArrayList<>();
+        Mockito.when(us.executeUpdate(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any())).thenAnswer(call -> {
+            KubeObjectResult status = call.getArgument(3);
+            return debouncer.submitAsync("test|5678", status.status(), () -> Mono.fromRunnable(() -> posted.add(status.message())))
+                    .thenReturn(5678L);
+        });
+
+        var deployment = yaml.loadAs(simpleGhd, GitHubDeployment.class);
+        deployment.getMetadata().setUid("ghd-uid");
+        var starting = Dynamics.newFromYaml(depOK);
+        starting.getRaw().get("metadata").getAsJsonObject().addProperty("resourceVersion", "100");
+        starting.getRaw().get("status").getAsJsonObject().addProperty("replicas", 0);
+        var terminating = Dynamics.newFromYaml(depOK);
+        terminating.getRaw().get("metadata").getAsJsonObject().addProperty("resourceVersion", "101");
+        terminating.getRaw().get("status").getAsJsonObject().addProperty("replicas", 2);
+
+        // Two in progress steps of the same GHD within the window: each capture is done at once
+        Mockito.when(doe.extractKubeObject(deployment.getSpec().getSourceRef())).thenReturn(starting);
+        assertThat(captureService.capture(deployment)).isTrue();
+        Mockito.when(doe.extractKubeObject(deployment.getSpec().getSourceRef())).thenReturn(terminating);
+        assertThat(captureService.capture(deployment)).isTrue();
+        assertThat(posted).isEmpty();
+
+        Thread.sleep(500);
+        assertThat(posted).containsExactly("Pending termination: 1");
+        debouncer.stop();
+    }
+
+    @Test
+    void testSourceAlreadyObservedBeforeRestart(){
+        var deployment = yaml.loadAs(simpleGhd, GitHubDeployment.class);
+        deployment.getMetadata().setUid("ghd-uid");
+        deployment.getMetadata().setGeneration(1L);
+        deployment.setStatus(GitHubDeploymentStatus.builder()
+                .withStatus(KubeObjectStatus.IN_PROGRESS)
+                .withRef("1235")
+                .withDeploymentId(5678)
+                .withObservedGeneration(1)
+                .withSourceResourceVersion("100")
+                .build());
+
+        var dyn = Dynamics.newFromYaml(depOK);
+        dyn.getRaw().get("metadata").getAsJsonObject().addProperty("resourceVersion", "100");
+        Mockito.when(doe.extractKubeObject(deployment.getSpec().getSourceRef())).thenReturn(dyn);
+
+        captureService.capture(deployment);
+        Mockito.verifyNoInteractions(us);
+        Mockito.verifyNoInteractions(em);
     }
 
     @Test
@@ -187,7 +302,7 @@ class CaptureTests {
 
         captureService.capture(deployment);
 
-        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"));
+        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"), 0L, null);
     }
 
     @Test
@@ -204,7 +319,7 @@ class CaptureTests {
         Mockito.when(doe.extractKubeObject(deployment.getSpec().getSourceRef())).thenReturn(dyn);
 
         captureService.capture(deployment);
-        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", 5678, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"));
+        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", 5678, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"), 0L, null);
     }
 
     @Test
@@ -262,7 +377,7 @@ class CaptureTests {
 
         captureService.capture(deployment);
 
-        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1"), Map.of("test", "testValue"));
+        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.IN_PROGRESS, "replicas: 0/1"), Map.of("test", "testValue"), 0L, null);
     }
 
     @Test
@@ -281,6 +396,6 @@ class CaptureTests {
 
         captureService.capture(deployment);
 
-        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"));
+        Mockito.verify(us).executeUpdate(deployment.getSpec().getRepository(), "1235", -1, new KubeObjectResult(KubeObjectStatus.CURRENT, "Deployment is available. Replicas: 1"), Map.of("test", "testValue"), 0L, null);
     }
 }
@@ -0,0 +1,49 @@
+package com.decathlon.github.kubernetesstatus.capture;
+
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.extract.ExtractRuleCache;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExtractRuleCacheTest {
+
+    private GitHubDeployment ghd(String uid, long generation, String regexp, String template) {
+        return GitHubDeployment.builder()
+                .withMetadata(new V1ObjectMeta().namespace("test").name("example").uid(uid).generation(generation))
+                .withSpec(GitHubDeploymentSpec.builder()
+                        .withSourceRef(GitHubDeploymentSpec.NamespacedObject.builder().withKind("Deployment").withName("test").withNamespace("test").build())
+                        .withExtract(GitHubDeploymentSpec.ExtractRule.builder().withContainerName("app").withRegexp(regexp).withTemplate(template).build())
+                        .build())
+                .build();
+    }
+
+    @Test
+    void sameGenerationIsCompiledOnce() {
+        var cache = new ExtractRuleCache();
+        var rule = cache.get(ghd("uid-1", 1, "v(?<ref>.*)", "release-{}"));
+
+        assertThat(cache.get(ghd("uid-1", 1, "v(?<ref>.*)", "release-{}"))).isSameAs(rule);
+        assertThat(rule.isSingleGroup()).isTrue();
+        assertThat(rule.applyTemplate("1.2")).isEqualTo("release-1.2");
+        assertThat(rule.getPodSpecPath()).containsExactly("spec", "template", "spec");
+    }
+
+    @Test
+    void newGenerationIsCompiledAgain() {
+        var cache = new ExtractRuleCache();
+        var rule = cache.get(ghd("uid-1", 1, "(.*)", null));
+        var updated = cache.get(ghd("uid-1", 2, "(?<prefix>v)(?<ref>.*)", "rel-"));
+
+        assertThat(updated).isNotSameAs(rule);
+        assertThat(updated.isSingleGroup()).isFalse();
+        assertThat(updated.isRefGroup()).isTrue();
+        assertThat(updated.applyTemplate("1.2")).isEqualTo("rel-1.2");
+        assertThat(cache.size()).isEqualTo(1);
+
+        cache.evict("uid-1");
+        assertThat(cache.size()).isZero();
+    }
+}
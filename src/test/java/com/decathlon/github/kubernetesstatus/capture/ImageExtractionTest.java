@@ -0,0 +1,46 @@
+package com.decathlon.github.kubernetesstatus.capture;
+
+import com.decathlon.github.kubernetesstatus.service.extract.ContainerImageExtractor;
+import com.decathlon.github.kubernetesstatus.service.extract.ImageReference;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageExtractionTest {
+
+    @Test
+    void parseImageReferences() {
+        assertThat(ImageReference.parse("nginx").ref()).isEqualTo("latest");
+        assertThat(ImageReference.parse("nginx:1.25").ref()).isEqualTo("1.25");
+        assertThat(ImageReference.parse("registry.local:5000/team/app:v1.2.3").ref()).isEqualTo("v1.2.3");
+        assertThat(ImageReference.parse("registry.local:5000/team/app").ref()).isEqualTo("latest");
+        assertThat(ImageReference.parse("app@sha256:abcdef").ref()).isEqualTo("abcdef");
+        assertThat(ImageReference.parse("app:v1@sha256:abcdef").ref()).isEqualTo("v1");
+
+        var ref = ImageReference.parse("localhost:5000/app:v2@sha256:abcdef");
+        assertThat(ref.registry()).isEqualTo("localhost:5000");
+        assertThat(ref.repository()).isEqualTo("app");
+        assertThat(ref.tag()).isEqualTo("v2");
+        assertThat(ref.digest()).isEqualTo("sha256:abcdef");
+
+        assertThat(ImageReference.parse("team/app:v3").registry()).isNull();
+    }
+
+    @Test
+    void findContainerAndInitContainer() {
+        var cronJob = JsonParser.parseString("""
+                {"spec": {"jobTemplate": {"spec": {"template": {"spec": {
+                  "initContainers": [{"name": "init", "image": "busybox:1.36"}],
+                  "containers": [{"name": "app", "image": "registry.local:5000/app:1.0"}]
+                }}}}}}
+                """).getAsJsonObject();
+        var path = ContainerImageExtractor.podSpecPath("CronJob");
+
+        assertThat(ContainerImageExtractor.image(cronJob, path, "app")).isEqualTo("registry.local:5000/app:1.0");
+        assertThat(ContainerImageExtractor.image(cronJob, path, "init")).isEqualTo("busybox:1.36");
+        assertThat(ContainerImageExtractor.image(cronJob, path, "other")).isNull();
+        assertThat(ContainerImageExtractor.image(cronJob, ContainerImageExtractor.podSpecPath("Deployment"), "app")).isNull();
+        assertThat(ContainerImageExtractor.podSpecPath("Service")).isNull();
+    }
+}
@@ -0,0 +1,37 @@
+package com.decathlon.github.kubernetesstatus.crd;
+
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The CRD applied by the step-by-step install must declare the same schema as the generated one: the API server prunes
+ * every field it does not know.
+ */
+class CrdFilesTest {
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> versions(String file) throws IOException {
+        Map<String, Object> crd = new Yaml().load(Files.readString(Path.of(file)));
+        var spec = (Map<String, Object>) crd.get("spec");
+        return ((List<Map<String, Object>>) spec.get("versions")).stream()
+                .collect(Collectors.toMap(version -> (String) version.get("name"), version -> version));
+    }
+
+    @Test
+    void setupCrdIsTheGeneratedOne() throws IOException {
+        var generated = versions("crds/githubdeployments.yaml");
+        var setup = versions("setup/capture/crd.yaml");
+
+        assertThat(setup).isEqualTo(generated);
+        assertThat(setup.get("v1beta1").toString()).contains("org=", "observedGeneration=", "sourceResourceVersion=", "statusHash=", "observedAt=");
+    }
+}
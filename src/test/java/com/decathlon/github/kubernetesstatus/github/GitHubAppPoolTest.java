@@ -0,0 +1,77 @@
+package com.decathlon.github.kubernetesstatus.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubAppPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubAppPoolTest {
+
+    private static AppProperties.GithubAppProperties app(long id) {
+        var app = new AppProperties.GithubAppProperties();
+        app.setId(id);
+        app.setPrivateKey("key-" + id);
+        return app;
+    }
+
+    private GitHubAppPool pool(SimpleMeterRegistry registry) {
+        var properties = new AppProperties();
+        properties.setGithub(new AppProperties.GitHubProperties());
+        properties.getGithub().setApp(app(1));
+        properties.getGithub().setApps(List.of(app(2), app(3)));
+        return new GitHubAppPool(properties, registry);
+    }
+
+    private static HttpHeaders budget(long remaining) {
+        var headers = new HttpHeaders();
+        headers.set("X-RateLimit-Remaining", Long.toString(remaining));
+        headers.set("X-RateLimit-Limit", "5000");
+        headers.set("X-RateLimit-Reset", Long.toString(Instant.now().plusSeconds(3600).getEpochSecond()));
+        return headers;
+    }
+
+    @Test
+    void repositorySticksToAnApp() {
+        var registry = new SimpleMeterRegistry();
+        var pool = pool(registry);
+
+        assertThat(pool.members()).extracting(GitHubAppPool.Member::getName).containsExactly("app-1", "app-2", "app-3");
+        assertThat(pool.select("my-org/my-repo")).isSameAs(pool.select("my-org/my-repo"));
+        assertThat(registry.get("github.ratelimit.remaining").gauges()).hasSize(3);
+    }
+
+    @Test
+    void lowAppIsAvoided() {
+        var pool = pool(new SimpleMeterRegistry());
+        var preferred = pool.select("my-org/my-repo");
+
+        preferred.getBudget().update(budget(10), 200);
+
+        var candidates = pool.candidates("my-org/my-repo");
+        assertThat(candidates.get(0)).isNotSameAs(preferred);
+        assertThat(candidates.get(candidates.size() - 1)).isSameAs(preferred);
+
+        preferred.getBudget().update(budget(4000), 200);
+        assertThat(pool.select("my-org/my-repo")).isSameAs(preferred);
+    }
+
+    @Test
+    void memberOfToken() {
+        var pool = pool(new SimpleMeterRegistry());
+        var second = pool.members().get(1);
+
+        pool.bind("abc", second, null);
+        assertThat(pool.memberOf("token abc")).isSameAs(second);
+
+        pool.bind("def", second, "abc");
+        assertThat(pool.memberOf("token abc")).isSameAs(pool.members().get(0));
+        assertThat(pool.memberOf("token def")).isSameAs(second);
+        assertThat(pool.memberOf(null)).isSameAs(pool.members().get(0));
+    }
+}
@@ -0,0 +1,29 @@
+package com.decathlon.github.kubernetesstatus.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubDeploymentIdCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubDeploymentIdCacheTest {
+
+    @Test
+    void idsAreKeptByRepositoryEnvironmentAndRef() {
+        var properties = new AppProperties();
+        properties.setGithub(new AppProperties.GitHubProperties());
+        var cache = new GitHubDeploymentIdCache(properties, new SimpleMeterRegistry());
+
+        assertThat(cache.get("repo", "staging", "v1")).isEqualTo(-1);
+        cache.put("repo", "staging", "v1", 1234);
+        cache.put("repo", "staging", "v2", -1);
+
+        assertThat(cache.get("repo", "staging", "v1")).isEqualTo(1234);
+        assertThat(cache.get("repo", "production", "v1")).isEqualTo(-1);
+        assertThat(cache.get("repo", "staging", "v2")).isEqualTo(-1);
+
+        cache.invalidate("repo", "staging", "v1");
+        assertThat(cache.get("repo", "staging", "v1")).isEqualTo(-1);
+    }
+}
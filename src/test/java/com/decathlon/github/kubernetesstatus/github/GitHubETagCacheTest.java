@@ -0,0 +1,91 @@
+package com.decathlon.github.kubernetesstatus.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubETagCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubETagCacheTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final GitHubETagCache cache;
+
+    GitHubETagCacheTest() {
+        var properties = new AppProperties();
+        properties.setGithub(new AppProperties.GitHubProperties());
+        properties.getGithub().setGithubApi("http://localhost:9999/github");
+        cache = new GitHubETagCache(properties, registry);
+    }
+
+    @Test
+    void notModifiedIsServedFromCache() throws IOException {
+        List<String> sentEtags = new ArrayList<>();
+        ClientHttpRequestExecution execution = (request, body) -> {
+            sentEtags.add(request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH));
+            if (sentEtags.size() == 1) {
+                var response = new MockClientHttpResponse("[{\"id\": 12}]".getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+                response.getHeaders().setETag("\"abc\"");
+                return response;
+            }
+            var response = new MockClientHttpResponse(new byte[0], HttpStatus.NOT_MODIFIED);
+            response.getHeaders().set("X-RateLimit-Remaining", "4999");
+            response.getHeaders().setContentLength(0);
+            return response;
+        };
+        var uri = URI.create("http://localhost:9999/github/repos/org/repo/deployments?ref=v1");
+
+        var first = cache.intercept(new MockClientHttpRequest(HttpMethod.GET, uri), new byte[0], execution);
+        assertThat(new String(first.getBody().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("[{\"id\": 12}]");
+
+        var second = cache.intercept(new MockClientHttpRequest(HttpMethod.GET, uri), new byte[0], execution);
+        assertThat(second.getStatusCode().value()).isEqualTo(200);
+        assertThat(new String(second.getBody().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("[{\"id\": 12}]");
+        assertThat(second.getHeaders().getFirst("X-RateLimit-Remaining")).isEqualTo("4999");
+        // The length is the one of the cached body, not of the empty 304
+        assertThat(second.getHeaders().getContentLength()).isEqualTo(12);
+
+        assertThat(sentEtags).containsExactly(null, "\"abc\"");
+        assertThat(registry.get("github.etag.requests").tag("result", "not_modified").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void notModifiedIsServedFromCacheToWebClient() {
+        List<String> sentEtags = new ArrayList<>();
+        ExchangeFunction exchange = request -> {
+            sentEtags.add(request.headers().getFirst(HttpHeaders.IF_NONE_MATCH));
+            if (sentEtags.size() == 1) {
+                return Mono.just(ClientResponse.create(HttpStatus.OK).header(HttpHeaders.ETAG, "\"abc\"").body("[{\"id\": 12}]").build());
+            }
+            return Mono.just(ClientResponse.create(HttpStatus.NOT_MODIFIED).header("X-RateLimit-Remaining", "4999").build());
+        };
+        var request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost:9999/github/repos/org/repo/deployments?ref=v1")).build();
+
+        var first = cache.filter().filter(request, exchange).flatMap(response -> response.bodyToMono(String.class)).block();
+        assertThat(first).isEqualTo("[{\"id\": 12}]");
+
+        var second = cache.filter().filter(request, exchange).block();
+        assertThat(second.statusCode().value()).isEqualTo(200);
+        assertThat(second.headers().asHttpHeaders().getFirst("X-RateLimit-Remaining")).isEqualTo("4999");
+        assertThat(second.bodyToMono(String.class).block()).isEqualTo("[{\"id\": 12}]");
+
+        assertThat(sentEtags).containsExactly(null, "\"abc\"");
+        assertThat(registry.get("github.etag.requests").tag("result", "not_modified").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,60 @@
+package com.decathlon.github.kubernetesstatus.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubErrorCache;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubErrorCacheEndpoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubErrorCacheTest {
+
+    private GitHubErrorCache cache(Duration ttl, SimpleMeterRegistry registry) {
+        var properties = new AppProperties();
+        properties.setGithub(new AppProperties.GitHubProperties());
+        properties.getGithub().getErrorCache().setTtl(ttl);
+        return new GitHubErrorCache(properties, registry);
+    }
+
+    @Test
+    void entriesExpire() throws InterruptedException {
+        var registry = new SimpleMeterRegistry();
+        var cache = cache(Duration.ofMillis(50), registry);
+        var key = GitHubErrorCache.key("repo", "staging", "422");
+
+        assertThat(cache.contains(key)).isFalse();
+        cache.add(key);
+        assertThat(cache.contains(key)).isTrue();
+        assertThat(registry.get("cache.gets").tag("cache", "github.errors").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+
+        Thread.sleep(100);
+        assertThat(cache.contains(key)).isFalse();
+    }
+
+    @Test
+    void entriesCanBeCleared() {
+        var cache = cache(Duration.ofMinutes(10), new SimpleMeterRegistry());
+        cache.add("a");
+        cache.add("b");
+        cache.invalidate("a");
+        assertThat(cache.entries()).containsOnlyKeys("b");
+        cache.invalidateAll();
+        assertThat(cache.entries()).isEmpty();
+    }
+
+    @Test
+    void entryWithSlashesCanBeCleared() {
+        var cache = cache(Duration.ofMinutes(10), new SimpleMeterRegistry());
+        var endpoint = new GitHubErrorCacheEndpoint(cache);
+        var key = GitHubErrorCache.key("my-org/my-repo", "staging", "feature/x");
+        cache.add(key);
+        cache.add("b");
+
+        // DELETE /actuator/githuberrors/my-org/my-repo|staging|feature/x
+        endpoint.clearEntry(key.split("/"));
+        assertThat(cache.entries()).containsOnlyKeys("b");
+    }
+}
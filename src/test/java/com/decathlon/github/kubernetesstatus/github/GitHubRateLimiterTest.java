@@ -0,0 +1,78 @@
+package com.decathlon.github.kubernetesstatus.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubAppPool;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubException;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitHubRateLimiterTest {
+    private static final URI TOKEN_URI = URI.create("http://localhost:9999/github/app/installations/1/access_tokens");
+
+    private final GitHubAppPool pool;
+    private final GitHubRateLimiter limiter;
+
+    GitHubRateLimiterTest() {
+        var properties = new AppProperties();
+        properties.setGithub(new AppProperties.GitHubProperties());
+        properties.getGithub().setGithubApi("http://localhost:9999/github");
+        properties.getGithub().setToken("abc");
+        pool = new GitHubAppPool(properties, new SimpleMeterRegistry());
+        limiter = new GitHubRateLimiter(properties, pool);
+
+        // The installation budget is spent for the next hour
+        var headers = new HttpHeaders();
+        headers.set("X-RateLimit-Remaining", "0");
+        headers.set("X-RateLimit-Limit", "5000");
+        headers.set("X-RateLimit-Reset", Long.toString(Instant.now().plusSeconds(3600).getEpochSecond()));
+        pool.members().get(0).getBudget().update(headers, 200);
+    }
+
+    private static MockClientHttpRequest request(String authorization) {
+        var request = new MockClientHttpRequest(HttpMethod.POST, TOKEN_URI);
+        request.getHeaders().set(HttpHeaders.AUTHORIZATION, authorization);
+        return request;
+    }
+
+    @Test
+    void appRequestsAreNotPaced() throws IOException {
+        ClientHttpRequestExecution execution = (request, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.CREATED);
+
+        // Installation token requests still go through
+        assertThat(limiter.intercept(request("Bearer jwt"), new byte[0], execution).getStatusCode().value()).isEqualTo(201);
+        assertThatThrownBy(() -> limiter.intercept(request("token abc"), new byte[0], execution))
+                .isInstanceOf(GitHubException.class);
+
+        var response = limiter.filter()
+                .filter(ClientRequest.create(HttpMethod.POST, TOKEN_URI).header(HttpHeaders.AUTHORIZATION, "Bearer jwt").build(),
+                        req -> Mono.just(ClientResponse.create(HttpStatus.CREATED).build()))
+                .block();
+        assertThat(response.statusCode().value()).isEqualTo(201);
+    }
+
+    @Test
+    void otherHostsAreNotPaced() {
+        var response = limiter.filter()
+                .filter(ClientRequest.create(HttpMethod.POST, URI.create("http://other-host/transfer")).header(HttpHeaders.AUTHORIZATION, "token abc").build(),
+                        req -> Mono.just(ClientResponse.create(HttpStatus.OK).build()))
+                .block();
+        assertThat(response.statusCode().value()).isEqualTo(200);
+    }
+}
@@ -0,0 +1,53 @@
+package com.decathlon.github.kubernetesstatus.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubException;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubRequests;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitHubRequestsTest {
+
+    private GitHubRequests requests(String orgs) {
+        var properties = new AppProperties();
+        properties.setGithub(new AppProperties.GitHubProperties());
+        properties.getGithub().setOrgs(orgs);
+        properties.getGithub().setGithubApi("https://api.github.com");
+        return new GitHubRequests(new ObjectMapper(), properties);
+    }
+
+    @Test
+    void defaultOrg() {
+        var requests = requests("first-org, second-org");
+
+        var org = requests.org(new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging"));
+
+        assertThat(org).isEqualTo("first-org");
+        assertThat(requests.deploymentsUrl(org, "my-repo")).isEqualTo("https://api.github.com/repos/first-org/my-repo/deployments");
+    }
+
+    @Test
+    void repositoryOrg() {
+        var requests = requests("first-org, second-org");
+
+        var org = requests.org(new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging", "Second-Org"));
+
+        assertThat(org).isEqualTo("second-org");
+        assertThat(requests.statusesUrl(org, "my-repo", 12)).isEqualTo("https://api.github.com/repos/second-org/my-repo/deployments/12/statuses");
+    }
+
+    @Test
+    void unknownOrgIsRefused() {
+        var requests = requests("first-org");
+        var repo = new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging", "other-org");
+
+        assertThatThrownBy(() -> requests.org(repo))
+                .isInstanceOf(GitHubException.class)
+                .extracting(e -> ((GitHubException) e).getStatusCode())
+                .isEqualTo(403);
+    }
+}
@@ -0,0 +1,118 @@
+package com.decathlon.github.kubernetesstatus.github;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubStatusDebouncer;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubStatusDebouncerTest {
+    private GitHubStatusDebouncer debouncer;
+    private final List<String> posted = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void before() {
+        var properties = new AppProperties();
+        properties.setGithub(new AppProperties.GitHubProperties());
+        properties.getGithub().getDebounce().setEnabled(true);
+        properties.getGithub().getDebounce().setWindow(Duration.ofMillis(100));
+        debouncer = new GitHubStatusDebouncer(properties);
+    }
+
+    @AfterEach
+    void after() {
+        debouncer.stop();
+    }
+
+    @Test
+    void onlyLastIntermediateStatusIsPosted() throws InterruptedException {
+        debouncer.submit("repo|1", KubeObjectStatus.UNKNOWN, () -> posted.add("unknown"));
+        debouncer.submit("repo|1", KubeObjectStatus.IN_PROGRESS, () -> posted.add("in_progress"));
+        assertThat(posted).isEmpty();
+
+        Thread.sleep(300);
+        assertThat(posted).containsExactly("in_progress");
+    }
+
+    @Test
+    void finalStatusIsPostedAtOnce() throws InterruptedException {
+        debouncer.submit("repo|1", KubeObjectStatus.IN_PROGRESS, () -> posted.add("in_progress"));
+        debouncer.submit("repo|1", KubeObjectStatus.CURRENT, () -> posted.add("success"));
+        assertThat(posted).containsExactly("success");
+
+        Thread.sleep(300);
+        assertThat(posted).containsExactly("success");
+    }
+
+    @Test
+    void finalStatusWaitsForTheOneBeingPostedWithoutBlocking() throws InterruptedException {
+        debouncer.submit("repo|1", KubeObjectStatus.IN_PROGRESS, () -> {
+            sleep(300);
+            posted.add("in_progress");
+        });
+        // The waiting status is being posted
+        Thread.sleep(150);
+
+        long start = System.currentTimeMillis();
+        var done = debouncer.submitAsync("repo|1", KubeObjectStatus.CURRENT, () -> Mono.fromRunnable(() -> posted.add("success"))).toFuture();
+        assertThat(System.currentTimeMillis() - start).isLessThan(100);
+
+        done.join();
+        assertThat(posted).containsExactly("in_progress", "success");
+    }
+
+    @Test
+    void heldStatusIsAcceptedAtOnce() {
+        // The caller does not wait for the window: the next status of the deployment can come meanwhile
+        assertThat(debouncer.submit("repo|1", KubeObjectStatus.UNKNOWN, () -> posted.add("unknown"))).isCompleted();
+        assertThat(debouncer.submitAsync("repo|1", KubeObjectStatus.IN_PROGRESS, () -> Mono.fromRunnable(() -> posted.add("in_progress"))).toFuture())
+                .isCompleted();
+        assertThat(posted).isEmpty();
+    }
+
+    @Test
+    void failedPostIsHeldAgain() throws InterruptedException {
+        var attempts = new AtomicInteger();
+        debouncer.submit("repo|1", KubeObjectStatus.IN_PROGRESS, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("GitHub is down");
+            }
+            posted.add("in_progress");
+        });
+
+        Thread.sleep(400);
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(posted).containsExactly("in_progress");
+    }
+
+    @Test
+    void failedPostIsNotPostedAfterTheFinalStatus() throws InterruptedException {
+        debouncer.submit("repo|1", KubeObjectStatus.IN_PROGRESS, () -> {
+            sleep(200);
+            throw new IllegalStateException("GitHub is down");
+        });
+        // The waiting status is being posted, then the final one comes
+        Thread.sleep(150);
+        debouncer.submit("repo|1", KubeObjectStatus.CURRENT, () -> posted.add("success")).join();
+
+        Thread.sleep(300);
+        assertThat(posted).containsExactly("success");
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
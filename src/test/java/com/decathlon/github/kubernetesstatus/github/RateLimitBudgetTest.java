@@ -0,0 +1,55 @@
+package com.decathlon.github.kubernetesstatus.github;
+
+import com.decathlon.github.kubernetesstatus.service.github.RateLimitBudget;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitBudgetTest {
+    private final Instant now = Instant.parse("2024-01-01T10:00:00Z");
+    private final RateLimitBudget budget = new RateLimitBudget(100, Clock.fixed(now, ZoneOffset.UTC));
+
+    private HttpHeaders headers(long remaining, Duration untilReset) {
+        var headers = new HttpHeaders();
+        headers.set("X-RateLimit-Limit", "5000");
+        headers.set("X-RateLimit-Remaining", Long.toString(remaining));
+        headers.set("X-RateLimit-Reset", Long.toString(now.plus(untilReset).getEpochSecond()));
+        return headers;
+    }
+
+    @Test
+    void noDelayWhileBudgetIsHigh() {
+        assertThat(budget.delay(false)).isZero();
+        budget.update(headers(4000, Duration.ofMinutes(30)), 200);
+        assertThat(budget.delay(false)).isZero();
+        assertThat(budget.delay(true)).isZero();
+        assertThat(budget.remaining()).isEqualTo(4000);
+    }
+
+    @Test
+    void lowBudgetIsKeptForPriorityRequests() {
+        budget.update(headers(50, Duration.ofMinutes(10)), 200);
+        assertThat(budget.delay(false)).isEqualTo(Duration.ofMinutes(10));
+        assertThat(budget.delay(true)).isEqualTo(Duration.ofSeconds(12));
+    }
+
+    @Test
+    void retryAfterBlocksEveryRequest() {
+        var headers = new HttpHeaders();
+        headers.set("Retry-After", "60");
+        budget.update(headers, 403);
+        assertThat(budget.delay(true)).isEqualTo(Duration.ofSeconds(60));
+    }
+
+    @Test
+    void exhaustedBudgetBlocksUntilReset() {
+        budget.update(headers(0, Duration.ofMinutes(5)), 403);
+        assertThat(budget.delay(true)).isEqualTo(Duration.ofMinutes(5));
+    }
+}
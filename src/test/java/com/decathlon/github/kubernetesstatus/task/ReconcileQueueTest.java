@@ -0,0 +1,79 @@
+package com.decathlon.github.kubernetesstatus.task;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReconcileQueueTest {
+    ReconcileQueue queue;
+
+    @BeforeEach
+    void before() {
+        var properties = new AppProperties();
+        properties.setKubernetes(new AppProperties.KubernetesProperties());
+        properties.getKubernetes().getQueue().setBaseDelay(Duration.ofMillis(100));
+        queue = new ReconcileQueue(properties);
+        queue.start();
+    }
+
+    @AfterEach
+    void after() {
+        queue.shutDown();
+    }
+
+    @Test
+    void duplicatesAreMerged() throws InterruptedException {
+        queue.add("ns/a");
+        queue.add("ns/b");
+        queue.add("ns/a");
+
+        assertThat(queue.get()).isEqualTo("ns/a");
+        assertThat(queue.get()).isEqualTo("ns/b");
+        queue.done("ns/a");
+        queue.done("ns/b");
+
+        queue.add("ns/c");
+        assertThat(queue.get()).isEqualTo("ns/c");
+    }
+
+    @Test
+    void failureIsRetriedAfterBackoff() throws InterruptedException {
+        queue.add("ns/a");
+        var key = queue.get();
+        queue.failure(key);
+        queue.done(key);
+        assertThat(queue.isBackingOff(key)).isTrue();
+
+        // Enqueued again once the backoff expired
+        long start = System.currentTimeMillis();
+        assertThat(queue.get()).isEqualTo("ns/a");
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(50);
+        assertThat(queue.isBackingOff(key)).isFalse();
+
+        queue.forget(key);
+        queue.done(key);
+        assertThat(queue.isBackingOff(key)).isFalse();
+    }
+
+    @Test
+    void changeEndsBackoff() throws InterruptedException {
+        queue.add("ns/a");
+        var key = queue.get();
+        queue.failure(key);
+        queue.done(key);
+        assertThat(queue.isBackingOff(key)).isTrue();
+
+        // The source changed: processed right away, not after the backoff
+        queue.changed(key);
+        assertThat(queue.isBackingOff(key)).isFalse();
+        long start = System.currentTimeMillis();
+        assertThat(queue.get()).isEqualTo("ns/a");
+        assertThat(System.currentTimeMillis() - start).isLessThan(50);
+        queue.done(key);
+    }
+}
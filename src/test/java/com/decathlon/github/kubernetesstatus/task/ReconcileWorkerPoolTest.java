@@ -0,0 +1,131 @@
+package com.decathlon.github.kubernetesstatus.task;
+
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeployment;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReconcileWorkerPoolTest {
+    ReconcileWorkerPool pool;
+
+    @AfterEach
+    void after() {
+        pool.stop();
+    }
+
+    private ReconcileWorkerPool createPool(Duration deadline) {
+        var properties = new AppProperties();
+        properties.setKubernetes(new AppProperties.KubernetesProperties());
+        var workers = properties.getKubernetes().getWorkers();
+        workers.setConcurrency(4);
+        workers.setMaxPerRepository(1);
+        workers.setMaxPerNamespace(4);
+        workers.setCycleDeadline(deadline);
+        return new ReconcileWorkerPool(properties);
+    }
+
+    private GitHubDeployment deployment(String namespace, String name, String repo) {
+        return GitHubDeployment.builder()
+                .withMetadata(new V1ObjectMeta().namespace(namespace).name(name))
+                .withSpec(GitHubDeploymentSpec.builder()
+                        .withRepository(new GitHubDeploymentSpec.RepositoryDetail(repo, "staging"))
+                        .build())
+                .build();
+    }
+
+    @Test
+    void limitPerRepository() {
+        pool = createPool(Duration.ofSeconds(10));
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        List<GitHubDeployment> deployments = IntStream.range(0, 5).mapToObj(i -> deployment("ns" + i, "d" + i, "same-repo")).toList();
+
+        pool.runCycle(deployments, d -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(20);
+            running.decrementAndGet();
+        });
+
+        assertThat(maxRunning.get()).isEqualTo(1);
+        // Nothing kept for the namespaces and repositories once their deployments are done
+        assertThat(pool.trackedLimits()).isZero();
+    }
+
+    @Test
+    void asyncTaskHoldsItsLimitsUntilItAnswers() {
+        pool = createPool(Duration.ofSeconds(10));
+        var answer = Sinks.<Boolean>one();
+        var started = new AtomicInteger();
+
+        pool.submitAsync(deployment("ns", "d1", "same-repo"), () -> {
+            started.incrementAndGet();
+            return answer.asMono();
+        });
+        pool.submitAsync(deployment("ns", "d2", "same-repo"), () -> {
+            started.incrementAndGet();
+            return Mono.just(true);
+        });
+
+        // The first one is still waiting for GitHub: the second one waits for the repository
+        sleep(200);
+        assertThat(started.get()).isEqualTo(1);
+
+        answer.tryEmitValue(true);
+        sleep(200);
+        assertThat(started.get()).isEqualTo(2);
+        assertThat(pool.trackedLimits()).isZero();
+    }
+
+    @Test
+    void cycleIsParallel() {
+        pool = createPool(Duration.ofSeconds(10));
+        var done = new AtomicInteger();
+        List<GitHubDeployment> deployments = IntStream.range(0, 4).mapToObj(i -> deployment("ns", "d" + i, "repo" + i)).toList();
+
+        long start = System.currentTimeMillis();
+        pool.runCycle(deployments, d -> {
+            sleep(300);
+            done.incrementAndGet();
+        });
+
+        assertThat(done.get()).isEqualTo(4);
+        assertThat(System.currentTimeMillis() - start).isLessThan(1000);
+    }
+
+    @Test
+    void cycleDeadline() {
+        pool = createPool(Duration.ofMillis(200));
+        var done = new AtomicInteger();
+        List<GitHubDeployment> deployments = List.of(deployment("ns", "fast", "repo1"), deployment("ns", "slow", "repo2"));
+
+        long start = System.currentTimeMillis();
+        pool.runCycle(deployments, d -> {
+            sleep("slow".equals(d.getMetadata().getName()) ? 5000 : 10);
+            if (!Thread.currentThread().isInterrupted()) {
+                done.incrementAndGet();
+            }
+        });
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+        assertThat(done.get()).isEqualTo(1);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.decathlon.github.kubernetesstatus.transfer;
+
+import com.decathlon.github.kubernetesstatus.controller.TransferController;
+import com.decathlon.github.kubernetesstatus.data.io.TransferData;
+import com.decathlon.github.kubernetesstatus.data.properties.AppMode;
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
+import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.github.GitHubEnvironmentService;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
+import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
+import com.decathlon.github.kubernetesstatus.service.transfer.TransferResponseCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransferDedupeTest {
+    private static final GitHubDeploymentSpec.RepositoryDetail REPO = new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging");
+    private static final KubeObjectResult STATUS = new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
+
+    private GitHubEnvironmentService github;
+    private TransferController controller;
+
+    @BeforeEach
+    void before() {
+        var properties = new AppProperties();
+        properties.setMode(AppMode.PROCESS);
+        properties.setGithub(new AppProperties.GitHubProperties());
+        github = Mockito.mock(GitHubEnvironmentService.class);
+        Mockito.when(github.executeUpdate(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.any())).thenReturn(1234L);
+        controller = new TransferController(properties, github, new TransferResponseCache(properties, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void sameEventSameKey() throws Exception {
+        var data = new TransferData(REPO, "1.0", -1, STATUS, Map.of("a", "1", "b", "2"), 1, "100");
+
+        assertThat(data.idempotencyKey()).isEqualTo(new TransferData(REPO, "1.0", -1, STATUS, Map.of("b", "2", "a", "1"), 1, "100").idempotencyKey());
+        assertThat(data.idempotencyKey()).isNotEqualTo(new TransferData(REPO, "1.1", -1, STATUS, Map.of("a", "1", "b", "2"), 1, "100").idempotencyKey());
+        // Captured again from another version of the GHD or of its source
+        assertThat(data.idempotencyKey()).isNotEqualTo(new TransferData(REPO, "1.0", -1, STATUS, Map.of("a", "1", "b", "2"), 2, "100").idempotencyKey());
+        assertThat(data.idempotencyKey()).isNotEqualTo(new TransferData(REPO, "1.0", -1, STATUS, Map.of("a", "1", "b", "2"), 1, "101").idempotencyKey());
+
+        // The key travels with the event
+        var mapper = new ObjectMapper();
+        assertThat(mapper.readValue(mapper.writeValueAsBytes(data), TransferData.class)).isEqualTo(data);
+    }
+
+    @Test
+    void eventSentAgainIsNotSentToGitHub() {
+        var data = new TransferData(REPO, "1.0", -1, STATUS, Map.of(), 1, "100");
+
+        assertThat(controller.transfer(data).getBody().eventId()).isEqualTo(1234);
+        assertThat(controller.transfer(data).getBody().eventId()).isEqualTo(1234);
+        assertThat(controller.transferBatch(List.of(data)).getBody().get(0).eventId()).isEqualTo(1234);
+
+        Mockito.verify(github, Mockito.times(1)).executeUpdate(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void eventSentTwiceAtOnceIsSentToGitHubOnce() throws Exception {
+        var data = new TransferData(REPO, "1.0", -1, STATUS, Map.of(), 1, "100");
+        var sending = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Mockito.when(github.executeUpdate(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            sending.countDown();
+            release.await(2, TimeUnit.SECONDS);
+            return 1234L;
+        });
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var first = executor.submit(() -> controller.transfer(data).getBody().eventId());
+            assertThat(sending.await(2, TimeUnit.SECONDS)).isTrue();
+            // Sent again by the capture node (timeout...) while GitHub is still answering the first one
+            var second = executor.submit(() -> controller.transferBatch(List.of(data)).getBody().get(0).eventId());
+            Thread.sleep(200);
+            assertThat(second).isNotDone();
+
+            release.countDown();
+            assertThat(first.get(2, TimeUnit.SECONDS)).isEqualTo(1234);
+            assertThat(second.get(2, TimeUnit.SECONDS)).isEqualTo(1234);
+        }
+        Mockito.verify(github, Mockito.times(1)).executeUpdate(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void statusSeenAgainIsSentAgain() {
+        var failure = new KubeObjectResult(KubeObjectStatus.FAILED, "ko");
+
+        // Success, failure, then success again on the same ref: each one is a new version of the source
+        controller.transfer(new TransferData(REPO, "1.0", 1234, STATUS, Map.of(), 1, "100"));
+        controller.transfer(new TransferData(REPO, "1.0", 1234, failure, Map.of(), 1, "101"));
+        controller.transfer(new TransferData(REPO, "1.0", 1234, STATUS, Map.of(), 1, "102"));
+
+        Mockito.verify(github, Mockito.times(2)).executeUpdate(REPO, "1.0", 1234, STATUS, Map.of());
+        Mockito.verify(github).executeUpdate(REPO, "1.0", 1234, failure, Map.of());
+    }
+
+    @Test
+    void eventWithoutKeyIsAlwaysSent() {
+        var data = new TransferData(REPO, "1.0", -1, STATUS, Map.of(), 1, "100", null);
+
+        controller.transfer(data);
+        controller.transfer(data);
+
+        Mockito.verify(github, Mockito.times(2)).executeUpdate(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void unexpectedErrorFailsOnlyItsEvent() {
+        var failing = new TransferData(REPO, "2.0", -1, STATUS, Map.of(), 1, "100");
+        Mockito.when(github.executeUpdate(Mockito.any(), Mockito.eq("2.0"), Mockito.anyLong(), Mockito.any(), Mockito.any()))
+                .thenThrow(new IllegalStateException("connection reset"));
+
+        var responses = controller.transferBatch(List.of(failing, new TransferData(REPO, "1.0", -1, STATUS, Map.of(), 1, "100"))).getBody();
+
+        assertThat(responses).hasSize(2);
+        assertThat(responses.get(0).eventId()).isEqualTo(-1);
+        assertThat(responses.get(0).status()).isEqualTo(500);
+        assertThat(responses.get(1).eventId()).isEqualTo(1234);
+    }
+}
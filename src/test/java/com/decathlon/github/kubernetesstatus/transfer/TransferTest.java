@@ -1,16 +1,42 @@
 package com.decathlon.github.kubernetesstatus.transfer;
 
+import com.decathlon.github.kubernetesstatus.data.io.TransferData;
+import com.decathlon.github.kubernetesstatus.data.properties.AppMode;
+import com.decathlon.github.kubernetesstatus.data.properties.AppProperties;
 import com.decathlon.github.kubernetesstatus.mock.MockServer;
 import com.decathlon.github.kubernetesstatus.model.v1beta1.GitHubDeploymentSpec;
+import com.decathlon.github.kubernetesstatus.service.UpdateService;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectResult;
 import com.decathlon.github.kubernetesstatus.service.kstatus.data.KubeObjectStatus;
+import com.decathlon.github.kubernetesstatus.service.transfer.TransferBatcher;
+import com.decathlon.github.kubernetesstatus.service.transfer.TransferEncoder;
+import com.decathlon.github.kubernetesstatus.service.transfer.TransferOutbox;
 import com.decathlon.github.kubernetesstatus.service.transfer.TransferService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -25,13 +51,58 @@ public class TransferTest {
         MockServer.destroyers();
     }
 
+    TransferOutbox outbox;
+
     WebClient webClient=WebClient.builder()
             .baseUrl("http://localhost:9999/transfer")
             .build();
 
+    private TransferBatcher batcher(boolean enabled) {
+        var properties=new AppProperties();
+        properties.setTransfer(new AppProperties.TransferProperties());
+        properties.getTransfer().getBatch().setEnabled(enabled);
+        properties.getTransfer().getBatch().setMaxSize(2);
+        properties.getTransfer().getBatch().setMaxWait(Duration.ofSeconds(5));
+        return new TransferBatcher(webClient, new TransferEncoder(properties, new ObjectMapper()), properties);
+    }
+
+    private TransferService service() {
+        return service(null);
+    }
+
+    private TransferService service(Path outboxDirectory) {
+        var properties=properties(outboxDirectory);
+        properties.setMode(AppMode.CAPTURE_AND_TRANSFER);
+        outbox=new TransferOutbox(properties, new ObjectMapper(), new SimpleMeterRegistry());
+        return new TransferService(webClient, new TransferEncoder(properties, new ObjectMapper()), batcher(false), outbox, properties);
+    }
+
+    private TransferOutbox outbox(Path directory) {
+        outbox=new TransferOutbox(properties(directory), new ObjectMapper(), new SimpleMeterRegistry());
+        return outbox;
+    }
+
+    private static AppProperties properties(Path outboxDirectory) {
+        var properties=new AppProperties();
+        properties.setTransfer(new AppProperties.TransferProperties());
+        if (outboxDirectory!=null) {
+            properties.getTransfer().getOutbox().setEnabled(true);
+            properties.getTransfer().getOutbox().setDirectory(outboxDirectory.toString());
+            properties.getTransfer().getOutbox().setRetryDelay(Duration.ofMinutes(1));
+        }
+        return properties;
+    }
+
+    @AfterEach
+    void stopOutbox() {
+        if (outbox!=null) {
+            outbox.stop();
+        }
+    }
+
     @Test
     void transferOkTest(){
-        TransferService t=new TransferService(webClient);
+        TransferService t=service();
 
         var repo=new GitHubDeploymentSpec.RepositoryDetail();
         var ref="ok";
@@ -39,13 +110,13 @@ public class TransferTest {
         KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
         Map<String, String> payload=Map.of("key","value");
 
-        var res=t.executeUpdate(repo, ref, env, status, payload);
+        var res=t.executeUpdate(repo, ref, env, status, payload, 1, "100").block();
         assertThat(res).isEqualTo(1234);
     }
 
     @Test
     void transferKoTest(){
-        TransferService t=new TransferService(webClient);
+        TransferService t=service();
 
         var repo=new GitHubDeploymentSpec.RepositoryDetail();
         var ref="ko";
@@ -53,8 +124,177 @@ public class TransferTest {
         KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
         Map<String, String> payload=Map.of("key","value");
 
-        var res=t.executeUpdate(repo, ref, env, status, payload);
+        var res=t.executeUpdate(repo, ref, env, status, payload, 1, "100").block();
         assertThat(res).isEqualTo(-1);
     }
 
+    @Test
+    void transferBatchTest() {
+        var batcher=batcher(true);
+        var repo=new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging");
+        KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
+
+        // The batch is sent when full, long before its max wait
+        var first=batcher.submit(new TransferData(repo, "ok", -1, status, Map.of(), 1, "100"));
+        var second=batcher.submit(new TransferData(repo, "422", -1, status, Map.of(), 1, "100"));
+
+        assertThat(first.orTimeout(2, TimeUnit.SECONDS).join()).isEqualTo(1234);
+        assertThat(second.orTimeout(2, TimeUnit.SECONDS).join()).isEqualTo(-1);
+        batcher.stop();
+    }
+
+    @Test
+    void transferBatchSentOnStopTest() {
+        var batcher=batcher(true);
+        var repo=new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging");
+        KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
+
+        // Not full, and far from its max wait: sent when stopping, not lost
+        var pending=batcher.submit(new TransferData(repo, "ok", -1, status, Map.of(), 1, "100"));
+        batcher.stop();
+
+        assertThat(pending).isDone();
+        assertThat(pending.join()).isEqualTo(1234);
+    }
+
+    @Test
+    void transferBatchesSentConcurrentlyTest() {
+        var inFlight=new AtomicInteger();
+        var maxInFlight=new AtomicInteger();
+        // A slow process node
+        var slowClient=WebClient.builder()
+                .exchangeFunction(request -> Mono.defer(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return Mono.delay(Duration.ofMillis(200)).map(tick -> {
+                        inFlight.decrementAndGet();
+                        return ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .body("[{\"eventId\":1234},{\"eventId\":1234}]")
+                                .build();
+                    });
+                }))
+                .build();
+        var properties=new AppProperties();
+        properties.setTransfer(new AppProperties.TransferProperties());
+        properties.getTransfer().setMaxInFlight(2);
+        properties.getTransfer().getBatch().setEnabled(true);
+        properties.getTransfer().getBatch().setMaxSize(2);
+        properties.getTransfer().getBatch().setMaxWait(Duration.ofSeconds(5));
+        var batcher=new TransferBatcher(slowClient, new TransferEncoder(properties, new ObjectMapper()), properties);
+        var repo=new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging");
+        KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
+
+        // 3 full batches: the caller does not wait for them, and 2 of them are sent at the same time
+        var results=IntStream.range(0, 6)
+                .mapToObj(i -> batcher.submit(new TransferData(repo, "ok", -1, status, Map.of(), 1, String.valueOf(i))))
+                .toList();
+        assertThat(results).noneMatch(CompletableFuture::isDone);
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).orTimeout(2, TimeUnit.SECONDS).join();
+        assertThat(results).allMatch(result -> result.join() == 1234);
+        assertThat(maxInFlight).hasValue(2);
+        batcher.stop();
+    }
+
+    @Test
+    void transferKoKeptInOutboxTest(@TempDir Path directory){
+        TransferService t=service(directory);
+
+        var repo=new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging");
+        KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
+
+        assertThat(t.executeUpdate(repo, "ko", 1, status, Map.of(), 1, "100").block()).isEqualTo(UpdateService.QUEUED);
+        // An older event is still waiting: the next one goes after it, even if it could be sent
+        assertThat(t.executeUpdate(repo, "ok", 1, status, Map.of(), 1, "100").block()).isEqualTo(UpdateService.QUEUED);
+        assertThat(outbox.pending()).isEqualTo(2);
+    }
+
+    @Test
+    void outboxReplayInOrderAfterRestartTest(@TempDir Path directory) throws InterruptedException {
+        var repo=new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging");
+        KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
+
+        // The process node is down: nothing leaves the outbox
+        var first=outbox(directory);
+        first.start(data -> Mono.error(new IllegalStateException("down")));
+        first.append(new TransferData(repo, "first", -1, status, Map.of(), 1, "100"));
+        first.append(new TransferData(repo, "second", -1, status, Map.of(), 1, "100"));
+        first.stop();
+
+        var sent=new CopyOnWriteArrayList<String>();
+        var restarted=outbox(directory);
+        restarted.start(data -> {
+            sent.add(data.ref());
+            return Mono.just(1L);
+        });
+
+        for (int i=0; i<50 && !restarted.isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(restarted.isEmpty()).isTrue();
+        assertThat(sent).containsExactly("first", "second");
+    }
+
+    @Test
+    void outboxPartialEventIsDroppedAfterRestartTest(@TempDir Path directory) throws Exception {
+        var repo=new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging");
+        KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
+
+        var first=outbox(directory);
+        first.start(data -> Mono.error(new IllegalStateException("down")));
+        first.append(new TransferData(repo, "first", -1, status, Map.of(), 1, "100"));
+        first.stop();
+        // The node stopped in the middle of writing an event
+        try (var segments=Files.list(directory)) {
+            var segment=segments.filter(file -> file.getFileName().toString().startsWith("segment-")).findFirst().orElseThrow();
+            Files.writeString(segment, "{\"repo\":{\"na", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+
+        var sent=new CopyOnWriteArrayList<String>();
+        var restarted=outbox(directory);
+        restarted.start(data -> {
+            sent.add(data.ref());
+            return Mono.just(1L);
+        });
+        restarted.append(new TransferData(repo, "second", -1, status, Map.of(), 1, "100"));
+
+        for (int i=0; i<50 && !restarted.isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(restarted.isEmpty()).isTrue();
+        assertThat(sent).containsExactly("first", "second");
+    }
+
+    @Test
+    void outboxReplayGoesOnAfterDiskErrorTest(@TempDir Path directory) throws Exception {
+        var repo=new GitHubDeploymentSpec.RepositoryDetail("my-repo", "staging");
+        KubeObjectResult status=new KubeObjectResult(KubeObjectStatus.CURRENT, "ok");
+        var properties=properties(directory);
+        properties.getTransfer().getOutbox().setRetryDelay(Duration.ofMillis(100));
+        var registry=new SimpleMeterRegistry();
+        outbox=new TransferOutbox(properties, new ObjectMapper(), registry);
+
+        var sent=new CopyOnWriteArrayList<String>();
+        outbox.start(data -> {
+            sent.add(data.ref());
+            return Mono.just(1L);
+        });
+        // The ack file cannot be written
+        var ack=Files.createDirectories(directory.resolve("ack"));
+        Files.writeString(ack.resolve("blocked"), "");
+        outbox.append(new TransferData(repo, "first", -1, status, Map.of(), 1, "100"));
+        for (int i=0; i<50 && registry.get("transfer.outbox.read.failures").counter().count()==0; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(registry.get("transfer.outbox.read.failures").counter().count()).isPositive();
+
+        // Back to normal: the replay did not stop
+        Files.delete(ack.resolve("blocked"));
+        Files.delete(ack);
+        outbox.append(new TransferData(repo, "second", -1, status, Map.of(), 1, "100"));
+        for (int i=0; i<50 && !sent.contains("second"); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(sent).containsExactly("first", "second");
+    }
 }